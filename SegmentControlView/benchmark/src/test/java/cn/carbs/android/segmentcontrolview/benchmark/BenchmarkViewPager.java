@@ -0,0 +1,53 @@
+package cn.carbs.android.segmentcontrolview.benchmark;
+
+import android.content.Context;
+import android.support.v4.view.ViewPager;
+
+import java.util.ArrayList;
+
+/**
+ * a ViewPager without pages, the benchmark plays its scroll callbacks to the listeners added to it
+ */
+class BenchmarkViewPager extends ViewPager {
+
+	private final ArrayList<OnPageChangeListener> listeners = new ArrayList<OnPageChangeListener>();
+
+	BenchmarkViewPager(Context context) {
+		super(context);
+	}
+
+	@Override
+	public void addOnPageChangeListener(OnPageChangeListener listener) {
+		super.addOnPageChangeListener(listener);
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeOnPageChangeListener(OnPageChangeListener listener) {
+		super.removeOnPageChangeListener(listener);
+		listeners.remove(listener);
+	}
+
+	int getListenerCount(){
+		return listeners.size();
+	}
+
+	void scroll(int position, float positionOffset){
+		int pixels = (int)(positionOffset * getWidth());
+		for(int i = 0; i < listeners.size(); i++){
+			listeners.get(i).onPageScrolled(position, positionOffset, pixels);
+		}
+	}
+
+	void select(int position){
+		for(int i = 0; i < listeners.size(); i++){
+			listeners.get(i).onPageSelected(position);
+		}
+	}
+
+	void setScrollState(int state){
+		for(int i = 0; i < listeners.size(); i++){
+			listeners.get(i).onPageScrollStateChanged(state);
+		}
+	}
+}
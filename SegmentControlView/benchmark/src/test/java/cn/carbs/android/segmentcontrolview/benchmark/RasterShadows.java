@@ -0,0 +1,859 @@
+package cn.carbs.android.segmentcontrolview.benchmark;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.view.View;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+import org.robolectric.internal.Shadow;
+import org.robolectric.internal.ShadowExtractor;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineMetrics;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * shadows that rasterize what the view draws into java.awt images, so that a benchmarked frame
+ * fills pixels as it would on a device: bitmaps are backed by images, paths are filled and stroked
+ * and texts are measured and drawn in the sans serif font of the JVM, anti-aliased as the paint says.
+ * Robolectric's own shadows of the view, matrix and drawable classes record every call and are
+ * replaced by empty ones, color filters are kept but not applied
+ */
+public class RasterShadows {
+
+	private static final Map<Bitmap, BufferedImage> images = new WeakHashMap<Bitmap, BufferedImage>();
+
+	static BufferedImage getImage(Bitmap bitmap){
+		BufferedImage image = images.get(bitmap);
+		if(image == null){
+			throw new IllegalArgumentException("the bitmap was not created by RasterShadows");
+		}
+		return image;
+	}
+
+	@Implements(View.class)
+	public static class QuietView {
+	}
+
+	@Implements(Matrix.class)
+	public static class QuietMatrix {
+	}
+
+	@Implements(Drawable.class)
+	public static class QuietDrawable {
+	}
+
+	@Implements(Bitmap.class)
+	public static class RasterBitmap {
+
+		@RealObject
+		private Bitmap realBitmap;
+
+		@Implementation
+		public static Bitmap createBitmap(int width, int height, Bitmap.Config config){
+			Bitmap bitmap = newBitmap(width, height);
+			images.put(bitmap, new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+			return bitmap;
+		}
+
+		@Implementation
+		public void eraseColor(int color){
+			BufferedImage image = getImage(realBitmap);
+			Graphics2D g = image.createGraphics();
+			g.setComposite(AlphaComposite.Src);
+			g.setColor(new Color(color, true));
+			g.fillRect(0, 0, image.getWidth(), image.getHeight());
+			g.dispose();
+		}
+
+		@Implementation
+		public int getPixel(int x, int y){
+			return getImage(realBitmap).getRGB(x, y);
+		}
+	}
+
+	/**
+	 * a font of the JVM at one size, with the advances of the ASCII characters measured once
+	 */
+	static class AwtFont {
+
+		private static final FontRenderContext CONTEXT = new FontRenderContext(null, true, true);
+		private static final Map<Float, AwtFont> fonts = new HashMap<Float, AwtFont>();
+
+		final Font font;
+		final float ascent;
+		final float descent;
+		private final float[] advances = new float[128];
+
+		private AwtFont(Font font){
+			this.font = font;
+			LineMetrics metrics = font.getLineMetrics("Xg", CONTEXT);
+			ascent = -metrics.getAscent();
+			descent = metrics.getDescent();
+			for(char c = 0; c < advances.length; c++){
+				advances[c] = measure(c);
+			}
+		}
+
+		/**
+		 * @param size the text size of the paint, negative for a bold font
+		 */
+		static AwtFont get(float size){
+			AwtFont font = fonts.get(size);
+			if(font == null){
+				font = new AwtFont(new Font(Font.SANS_SERIF, size < 0 ? Font.BOLD : Font.PLAIN, 1)
+						.deriveFont(Math.abs(size)));
+				fonts.put(size, font);
+			}
+			return font;
+		}
+
+		float advance(char c){
+			return c < advances.length ? advances[c] : measure(c);
+		}
+
+		private float measure(char c){
+			return (float)font.getStringBounds(String.valueOf(c), CONTEXT).getWidth();
+		}
+	}
+
+	@Implements(Paint.class)
+	public static class RasterPaint {
+
+		@RealObject
+		private Paint realPaint;
+
+		private int flags;
+		private int color;
+		private Paint.Style style;
+		private float strokeWidth;
+		private float textSize;
+		private Typeface typeface;
+		private ColorFilter colorFilter;
+		private AwtFont font;	//of textSize and typeface, looked up when first needed
+
+		@Implementation
+		public void __constructor__(){
+			reset();
+			Shadow.invokeConstructor(Paint.class, realPaint);
+		}
+
+		@Implementation
+		public void __constructor__(int flags){
+			reset();
+			Shadow.invokeConstructor(Paint.class, realPaint, ClassParameter.from(int.class, flags));
+		}
+
+		@Implementation
+		public void __constructor__(Paint paint){
+			Shadow.invokeConstructor(Paint.class, realPaint, ClassParameter.from(Paint.class, paint));
+			set(paint);
+		}
+
+		@Implementation
+		public void reset(){
+			flags = 0;
+			color = 0xff000000;
+			style = Paint.Style.FILL;
+			strokeWidth = 0;
+			textSize = 12;
+			typeface = null;
+			colorFilter = null;
+			font = null;
+		}
+
+		@Implementation
+		public void set(Paint paint){
+			Shadow.directlyOn(realPaint, Paint.class, "set", ClassParameter.from(Paint.class, paint));
+			RasterPaint src = shadowOf(paint);
+			flags = src.flags;
+			color = src.color;
+			style = src.style;
+			strokeWidth = src.strokeWidth;
+			textSize = src.textSize;
+			typeface = src.typeface;
+			colorFilter = src.colorFilter;
+			font = src.font;
+		}
+
+		@Implementation
+		public int getFlags(){
+			return flags;
+		}
+
+		@Implementation
+		public void setFlags(int flags){
+			this.flags = flags;
+		}
+
+		@Implementation
+		public void setAntiAlias(boolean antiAlias){
+			flags = antiAlias ? flags | Paint.ANTI_ALIAS_FLAG : flags & ~Paint.ANTI_ALIAS_FLAG;
+		}
+
+		@Implementation
+		public int getColor(){
+			return color;
+		}
+
+		@Implementation
+		public void setColor(int color){
+			this.color = color;
+		}
+
+		@Implementation
+		public int getAlpha(){
+			return color >>> 24;
+		}
+
+		@Implementation
+		public void setAlpha(int alpha){
+			color = (color & 0x00ffffff) | (alpha << 24);
+		}
+
+		@Implementation
+		public Paint.Style getStyle(){
+			return style;
+		}
+
+		@Implementation
+		public void setStyle(Paint.Style style){
+			this.style = style;
+		}
+
+		@Implementation
+		public float getStrokeWidth(){
+			return strokeWidth;
+		}
+
+		@Implementation
+		public void setStrokeWidth(float strokeWidth){
+			this.strokeWidth = strokeWidth;
+		}
+
+		@Implementation
+		public float getTextSize(){
+			return textSize;
+		}
+
+		@Implementation
+		public void setTextSize(float textSize){
+			if(this.textSize != textSize){
+				this.textSize = textSize;
+				font = null;
+			}
+		}
+
+		@Implementation
+		public Typeface getTypeface(){
+			return typeface;
+		}
+
+		@Implementation
+		public Typeface setTypeface(Typeface typeface){
+			if(this.typeface != typeface){
+				this.typeface = typeface;
+				font = null;
+			}
+			return typeface;
+		}
+
+		@Implementation
+		public ColorFilter getColorFilter(){
+			return colorFilter;
+		}
+
+		@Implementation
+		public ColorFilter setColorFilter(ColorFilter colorFilter){
+			this.colorFilter = colorFilter;
+			return colorFilter;
+		}
+
+		AwtFont font(){
+			if(font == null){
+				boolean bold = typeface != null && (typeface.getStyle() & Typeface.BOLD) != 0;
+				font = AwtFont.get(bold ? -textSize : textSize);
+			}
+			return font;
+		}
+
+		@Implementation
+		public float ascent(){
+			return font().ascent;
+		}
+
+		@Implementation
+		public float descent(){
+			return font().descent;
+		}
+
+		@Implementation
+		public float getFontMetrics(Paint.FontMetrics metrics){
+			if(metrics != null){
+				metrics.top = metrics.ascent = ascent();
+				metrics.bottom = metrics.descent = descent();
+				metrics.leading = 0;
+			}
+			return descent() - ascent();
+		}
+
+		@Implementation
+		public int getFontMetricsInt(Paint.FontMetricsInt metrics){
+			int ascent = (int)Math.floor(ascent());
+			int descent = (int)Math.ceil(descent());
+			if(metrics != null){
+				metrics.top = metrics.ascent = ascent;
+				metrics.bottom = metrics.descent = descent;
+				metrics.leading = 0;
+			}
+			return descent - ascent;
+		}
+
+		@Implementation
+		public float measureText(String text){
+			return measure(text, 0, text.length(), null, 0);
+		}
+
+		@Implementation
+		public float measureText(String text, int start, int end){
+			return measure(text, start, end, null, 0);
+		}
+
+		@Implementation
+		public float measureText(char[] text, int index, int count){
+			return measure(new String(text, index, count), 0, count, null, 0);
+		}
+
+		@Implementation
+		public float measureText(CharSequence text, int start, int end){
+			return measure(text, start, end, null, 0);
+		}
+
+		@Implementation
+		public int getTextWidths(char[] text, int index, int count, float[] widths){
+			measure(new String(text, index, count), 0, count, widths, 0);
+			return count;
+		}
+
+		@Implementation
+		public int getTextWidths(CharSequence text, int start, int end, float[] widths){
+			measure(text, start, end, widths, 0);
+			return end - start;
+		}
+
+		@Implementation
+		public int getTextWidths(String text, int start, int end, float[] widths){
+			measure(text, start, end, widths, 0);
+			return end - start;
+		}
+
+		@Implementation
+		public int getTextWidths(String text, float[] widths){
+			measure(text, 0, text.length(), widths, 0);
+			return text.length();
+		}
+
+		@Implementation
+		public float getTextRunAdvances(char[] chars, int index, int count, int contextIndex, int contextCount,
+				boolean isRtl, float[] advances, int advancesIndex){
+			return measure(new String(chars, index, count), 0, count, advances, advancesIndex);
+		}
+
+		@Implementation
+		public float getTextRunAdvances(CharSequence text, int start, int end, int contextStart, int contextEnd,
+				boolean isRtl, float[] advances, int advancesIndex){
+			return measure(text, start, end, advances, advancesIndex);
+		}
+
+		@Implementation
+		public float getTextRunAdvances(String text, int start, int end, int contextStart, int contextEnd,
+				boolean isRtl, float[] advances, int advancesIndex){
+			return measure(text, start, end, advances, advancesIndex);
+		}
+
+		/**
+		 * @param advances if not null, gets the advance of every character from offset on
+		 * @return the width of the characters from start to end
+		 */
+		private float measure(CharSequence text, int start, int end, float[] advances, int offset){
+			AwtFont font = font();
+			float width = 0;
+			for(int i = start; i < end; i++){
+				float advance = font.advance(text.charAt(i));
+				if(advances != null){
+					advances[offset + i - start] = advance;
+				}
+				width += advance;
+			}
+			return width;
+		}
+
+		@Implementation
+		public void getTextBounds(String text, int start, int end, Rect bounds){
+			bounds.set(0, (int)Math.floor(ascent()), (int)Math.ceil(measureText(text, start, end)), 0);
+		}
+
+		@Implementation
+		public void getTextBounds(char[] text, int index, int count, Rect bounds){
+			bounds.set(0, (int)Math.floor(ascent()), (int)Math.ceil(measureText(text, index, count)), 0);
+		}
+	}
+
+	@Implements(TextPaint.class)
+	public static class RasterTextPaint extends RasterPaint {
+	}
+
+	/**
+	 * lets lines break after spaces, Robolectric's StaticLayout only breaks where a line is full
+	 */
+	@Implements(StaticLayout.class)
+	public static class RasterStaticLayout {
+
+		@Implementation
+		public static int[] nLineBreakOpportunities(String locale, char[] text, int length, int[] recycle){
+			int[] breaks = new int[length + 2];
+			int count = 0;
+			for(int i = 0; i < length; i++){
+				if(text[i] == ' '){
+					breaks[count++] = i + 1;
+				}
+			}
+			breaks[count++] = length;
+			breaks[count] = -1;
+			return breaks;
+		}
+	}
+
+	@Implements(Path.class)
+	public static class RasterPath {
+
+		private final Path2D.Float shape = new Path2D.Float(Path2D.WIND_NON_ZERO);
+
+		@Implementation
+		public void __constructor__(Path src){
+			if(src != null){
+				shape.append(shadowOf(src).shape, false);
+			}
+		}
+
+		@Implementation
+		public void reset(){
+			shape.reset();
+		}
+
+		@Implementation
+		public void rewind(){
+			shape.reset();
+		}
+
+		@Implementation
+		public boolean isEmpty(){
+			return shape.getCurrentPoint() == null;
+		}
+
+		@Implementation
+		public void computeBounds(RectF bounds, boolean exact){
+			Rectangle2D rect = shape.getBounds2D();
+			bounds.set((float)rect.getMinX(), (float)rect.getMinY(), (float)rect.getMaxX(), (float)rect.getMaxY());
+		}
+
+		@Implementation
+		public void moveTo(float x, float y){
+			shape.moveTo(x, y);
+		}
+
+		@Implementation
+		public void lineTo(float x, float y){
+			ensureStarted();
+			shape.lineTo(x, y);
+		}
+
+		@Implementation
+		public void quadTo(float x1, float y1, float x2, float y2){
+			ensureStarted();
+			shape.quadTo(x1, y1, x2, y2);
+		}
+
+		@Implementation
+		public void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3){
+			ensureStarted();
+			shape.curveTo(x1, y1, x2, y2, x3, y3);
+		}
+
+		@Implementation
+		public void arcTo(RectF oval, float startAngle, float sweepAngle, boolean forceMoveTo){
+			//android measures angles clockwise, java.awt counterclockwise
+			Arc2D arc = new Arc2D.Float(oval.left, oval.top, oval.width(), oval.height(),
+					-startAngle, -sweepAngle, Arc2D.OPEN);
+			shape.append(arc, !forceMoveTo && shape.getCurrentPoint() != null);
+		}
+
+		@Implementation
+		public void arcTo(RectF oval, float startAngle, float sweepAngle){
+			arcTo(oval, startAngle, sweepAngle, false);
+		}
+
+		@Implementation
+		public void addRect(RectF rect, Path.Direction dir){
+			shape.append(new Rectangle2D.Float(rect.left, rect.top, rect.width(), rect.height()), false);
+		}
+
+		@Implementation
+		public void addRect(float left, float top, float right, float bottom, Path.Direction dir){
+			shape.append(new Rectangle2D.Float(left, top, right - left, bottom - top), false);
+		}
+
+		@Implementation
+		public void addRoundRect(RectF rect, float rx, float ry, Path.Direction dir){
+			shape.append(new RoundRectangle2D.Float(rect.left, rect.top, rect.width(), rect.height(),
+					2 * rx, 2 * ry), false);
+		}
+
+		@Implementation
+		public void close(){
+			if(shape.getCurrentPoint() != null){
+				shape.closePath();
+			}
+		}
+
+		private void ensureStarted(){
+			if(shape.getCurrentPoint() == null){
+				shape.moveTo(0, 0);
+			}
+		}
+	}
+
+	/**
+	 * draws with one Graphics2D per bitmap, which gets the transform, clip and paint of every call
+	 */
+	@Implements(Canvas.class)
+	public static class RasterCanvas {
+
+		private static final AffineTransform IDENTITY = new AffineTransform();
+
+		private Bitmap bitmap;
+		private Graphics2D graphics;
+		private AffineTransform transform = new AffineTransform();
+		private Area clip;	//in pixels, null means the whole bitmap
+		private final ArrayList<AffineTransform> savedTransforms = new ArrayList<AffineTransform>();
+		private final ArrayList<Area> savedClips = new ArrayList<Area>();
+
+		@Implementation
+		public void __constructor__(){
+		}
+
+		@Implementation
+		public void __constructor__(Bitmap bitmap){
+			setBitmap(bitmap);
+		}
+
+		@Implementation
+		public void setBitmap(Bitmap bitmap){
+			if(graphics != null){
+				graphics.dispose();
+			}
+			this.bitmap = bitmap;
+			graphics = bitmap == null ? null : getImage(bitmap).createGraphics();
+			transform = new AffineTransform();
+			clip = null;
+			savedTransforms.clear();
+			savedClips.clear();
+		}
+
+		@Implementation
+		public boolean isHardwareAccelerated(){
+			return false;
+		}
+
+		@Implementation
+		public int getWidth(){
+			return bitmap == null ? 0 : bitmap.getWidth();
+		}
+
+		@Implementation
+		public int getHeight(){
+			return bitmap == null ? 0 : bitmap.getHeight();
+		}
+
+		@Implementation
+		public int save(){
+			savedTransforms.add(new AffineTransform(transform));
+			savedClips.add(clip == null ? null : new Area(clip));
+			return savedTransforms.size();
+		}
+
+		@Implementation
+		public int save(int saveFlags){
+			return save();
+		}
+
+		@Implementation
+		public int getSaveCount(){
+			return savedTransforms.size() + 1;
+		}
+
+		@Implementation
+		public void restore(){
+			if(savedTransforms.isEmpty()){
+				throw new IllegalStateException("Underflow in restore");
+			}
+			int last = savedTransforms.size() - 1;
+			transform = savedTransforms.remove(last);
+			clip = savedClips.remove(last);
+		}
+
+		@Implementation
+		public void restoreToCount(int saveCount){
+			while(getSaveCount() > saveCount){
+				restore();
+			}
+		}
+
+		@Implementation
+		public void translate(float dx, float dy){
+			transform.translate(dx, dy);
+		}
+
+		@Implementation
+		public void scale(float sx, float sy){
+			transform.scale(sx, sy);
+		}
+
+		@Implementation
+		public boolean clipRect(float left, float top, float right, float bottom){
+			return clip(new Rectangle2D.Float(left, top, right - left, bottom - top));
+		}
+
+		@Implementation
+		public boolean clipRect(int left, int top, int right, int bottom){
+			return clipRect((float)left, top, right, bottom);
+		}
+
+		@Implementation
+		public boolean clipRect(Rect rect){
+			return clipRect((float)rect.left, rect.top, rect.right, rect.bottom);
+		}
+
+		@Implementation
+		public boolean clipRect(RectF rect){
+			return clipRect(rect.left, rect.top, rect.right, rect.bottom);
+		}
+
+		@Implementation
+		public boolean clipPath(Path path){
+			return clip(shadowOf(path).shape);
+		}
+
+		private boolean clip(Shape shape){
+			Area area = new Area(transform.createTransformedShape(shape));
+			if(clip == null){
+				clip = new Area(new Rectangle2D.Float(0, 0, getWidth(), getHeight()));
+			}
+			clip.intersect(area);
+			return !clip.isEmpty();
+		}
+
+		@Implementation
+		public boolean getClipBounds(Rect bounds){
+			Shape deviceClip = clip != null ? clip : new Rectangle2D.Float(0, 0, getWidth(), getHeight());
+			Rectangle2D local;
+			try{
+				local = transform.createInverse().createTransformedShape(deviceClip).getBounds2D();
+			}catch(java.awt.geom.NoninvertibleTransformException e){
+				bounds.setEmpty();
+				return false;
+			}
+			if(bounds != null){
+				bounds.set((int)Math.floor(local.getMinX()), (int)Math.floor(local.getMinY()),
+						(int)Math.ceil(local.getMaxX()), (int)Math.ceil(local.getMaxY()));
+			}
+			return !local.isEmpty();
+		}
+
+		@Implementation
+		public void drawPath(Path path, Paint paint){
+			draw(shadowOf(path).shape, paint);
+		}
+
+		@Implementation
+		public void drawRect(float left, float top, float right, float bottom, Paint paint){
+			draw(new Rectangle2D.Float(left, top, right - left, bottom - top), paint);
+		}
+
+		@Implementation
+		public void drawRect(RectF rect, Paint paint){
+			drawRect(rect.left, rect.top, rect.right, rect.bottom, paint);
+		}
+
+		@Implementation
+		public void drawRect(Rect rect, Paint paint){
+			drawRect(rect.left, rect.top, rect.right, rect.bottom, paint);
+		}
+
+		@Implementation
+		public void drawLines(float[] pts, int offset, int count, Paint paint){
+			Graphics2D g = begin(paint);
+			g.setStroke(stroke(paint));
+			Path2D.Float lines = new Path2D.Float();
+			for(int i = offset; i + 3 < offset + count; i += 4){
+				lines.moveTo(pts[i], pts[i + 1]);
+				lines.lineTo(pts[i + 2], pts[i + 3]);
+			}
+			g.draw(lines);
+		}
+
+		@Implementation
+		public void drawLines(float[] pts, Paint paint){
+			drawLines(pts, 0, pts.length, paint);
+		}
+
+		@Implementation
+		public void drawBitmap(Bitmap source, float left, float top, Paint paint){
+			Graphics2D g = begin(null);
+			if(paint != null){
+				g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, paint.getAlpha() / 255f));
+			}
+			g.drawImage(getImage(source), Math.round(left), Math.round(top), null);
+		}
+
+		@Implementation
+		public void drawText(String text, float x, float y, Paint paint){
+			drawText(text, 0, text.length(), x, y, paint);
+		}
+
+		@Implementation
+		public void drawText(String text, int start, int end, float x, float y, Paint paint){
+			drawText((CharSequence)text, start, end, x, y, paint);
+		}
+
+		@Implementation
+		public void drawText(char[] text, int index, int count, float x, float y, Paint paint){
+			drawText(new String(text, index, count), x, y, paint);
+		}
+
+		@Implementation
+		public void drawText(CharSequence text, int start, int end, float x, float y, Paint paint){
+			Graphics2D g = begin(paint);
+			g.setFont(shadowOf(paint).font().font);
+			g.drawString(text.subSequence(start, end).toString(), x, y);
+		}
+
+		@Implementation
+		public void drawTextRun(char[] text, int index, int count, int contextIndex, int contextCount,
+				float x, float y, boolean isRtl, Paint paint){
+			drawText(text, index, count, x, y, paint);
+		}
+
+		@Implementation
+		public void drawTextRun(CharSequence text, int start, int end, int contextStart, int contextEnd,
+				float x, float y, boolean isRtl, Paint paint){
+			drawText(text, start, end, x, y, paint);
+		}
+
+		private void draw(Shape shape, Paint paint){
+			Graphics2D g = begin(paint);
+			if(paint.getStyle() != Paint.Style.STROKE){
+				g.fill(shape);
+			}
+			if(paint.getStyle() != Paint.Style.FILL){
+				g.setStroke(stroke(paint));
+				g.draw(shape);
+			}
+		}
+
+		/**
+		 * @param paint null to draw a bitmap as it is
+		 */
+		private Graphics2D begin(Paint paint){
+			if(graphics == null){
+				throw new IllegalStateException("the canvas has no bitmap");
+			}
+			Graphics2D g = graphics;
+			//the clip is in pixels, Graphics2D.setClip() takes it in the current transform
+			g.setTransform(IDENTITY);
+			g.setClip(clip);
+			g.setTransform(transform);
+			g.setComposite(AlphaComposite.SrcOver);
+			boolean antiAlias = paint != null && (paint.getFlags() & Paint.ANTI_ALIAS_FLAG) != 0;
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+					antiAlias ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+			g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+					antiAlias ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+			if(paint != null){
+				g.setColor(new Color(paint.getColor(), true));
+			}
+			return g;
+		}
+
+		private static BasicStroke stroke(Paint paint){
+			//a width of 0 is a hairline, one pixel wide
+			return new BasicStroke(Math.max(1f, paint.getStrokeWidth()), BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 4f);
+		}
+	}
+
+	/**
+	 * a real, mutable Bitmap object of the given size, without a native side
+	 */
+	private static Bitmap newBitmap(int width, int height){
+		try{
+			for(Constructor<?> constructor : Bitmap.class.getDeclaredConstructors()){
+				Class<?>[] types = constructor.getParameterTypes();
+				//Bitmap(long nativeBitmap, byte[] buffer, int width, int height, int density,
+				//		boolean isMutable, boolean requestPremultiplied, byte[] ninePatchChunk, ...)
+				if(types.length >= 8 && types[0] == long.class && types[2] == int.class){
+					Object[] args = new Object[types.length];
+					args[0] = 1L;
+					args[2] = width;
+					args[3] = height;
+					args[4] = -1;
+					args[5] = true;
+					args[6] = true;
+					constructor.setAccessible(true);
+					return (Bitmap)constructor.newInstance(args);
+				}
+			}
+		}catch(Exception e){
+			throw new IllegalStateException(e);
+		}
+		throw new IllegalStateException("no Bitmap constructor to create a bitmap with");
+	}
+
+	private static RasterPaint shadowOf(Paint paint){
+		return (RasterPaint)ShadowExtractor.extract(paint);
+	}
+
+	private static RasterPath shadowOf(Path path){
+		return (RasterPath)ShadowExtractor.extract(path);
+	}
+}
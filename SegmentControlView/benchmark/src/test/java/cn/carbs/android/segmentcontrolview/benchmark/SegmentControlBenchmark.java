@@ -0,0 +1,311 @@
+package cn.carbs.android.segmentcontrolview.benchmark;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.support.v4.view.ViewPager;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+import cn.carbs.android.segmentcontrolview.library.SegmentControlView;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * times what SegmentControlView does per frame and per change for 2, 5, 20 and 200 segments,
+ * laid out in equal widths, the default, and as wide as their texts in a scrolling strip.
+ * the results are written as JSON to the file in the system property benchmark.output,
+ * every operation gets the fields of SegmentControlMetrics.toJson(), e.g.
+ * {"2":{"equalWidths":{"measureWrap":{"count":500,"totalNanos":...,"averageNanos":...,"maxNanos":...,
+ * "p50Nanos":...,"p90Nanos":...,"p99Nanos":...},"measureExact":{...},...},"contentWidths":{...}},"5":{...},...}
+ *
+ * frames are rasterized by RasterShadows into java.awt images, with the fonts of this JVM,
+ * so the numbers are the library's and the framework's code and a software rasterizer,
+ * not those of a device. compare runs made on the same machine
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21, shadows = {
+		RasterShadows.QuietView.class,
+		RasterShadows.QuietMatrix.class,
+		RasterShadows.QuietDrawable.class,
+		RasterShadows.RasterBitmap.class,
+		RasterShadows.RasterPaint.class,
+		RasterShadows.RasterTextPaint.class,
+		RasterShadows.RasterStaticLayout.class,
+		RasterShadows.RasterPath.class,
+		RasterShadows.RasterCanvas.class})
+public class SegmentControlBenchmark {
+
+	private static final int[] SEGMENT_COUNTS = {2, 5, 20, 200};
+	private static final String EQUAL_WIDTHS = "equalWidths";
+	private static final String CONTENT_WIDTHS = "contentWidths";
+	private static final String[] LAYOUTS = {EQUAL_WIDTHS, CONTENT_WIDTHS};
+	private static final int WIDTH = 1080;
+	private static final int WARM_UP_RUNS = 1000;
+	private static final int SAMPLES = 500;
+	//a touch is too short for System.nanoTime(), each sample is the average of this many
+	private static final int TOUCHES_PER_SAMPLE = 100;
+	//onPageScrolled() callbacks from one page to the next
+	private static final int PAGER_STEPS = 10;
+
+	@Test
+	public void benchmark() throws IOException {
+		StringBuilder json = new StringBuilder();
+		json.append('{');
+		for(int i = 0; i < SEGMENT_COUNTS.length; i++){
+			int count = SEGMENT_COUNTS[i];
+			if(i > 0){
+				json.append(',');
+			}
+			json.append('"').append(count).append("\":{");
+			for(int j = 0; j < LAYOUTS.length; j++){
+				String layout = LAYOUTS[j];
+				if(j > 0){
+					json.append(',');
+				}
+				json.append('"').append(layout).append("\":{");
+				appendResult(json, "measureWrap", measure(count, layout, View.MeasureSpec.AT_MOST));
+				json.append(',');
+				appendResult(json, "measureExact", measure(count, layout, View.MeasureSpec.EXACTLY));
+				json.append(',');
+				appendResult(json, "draw", draw(count, layout, false));
+				json.append(',');
+				appendResult(json, "drawGradient", draw(count, layout, true));
+				json.append(',');
+				appendResult(json, "touch", touch(count, layout));
+				json.append(',');
+				appendResult(json, "setTexts", setTexts(count, layout));
+				json.append(',');
+				appendResult(json, "viewPagerSweep", viewPagerSweep(count, layout));
+				json.append('}');
+			}
+			json.append('}');
+		}
+		json.append('}');
+		write(json.toString());
+	}
+
+	/**
+	 * onMeasure() with a width of WIDTH at most or exactly, the height is wrapped
+	 */
+	private long[] measure(int count, String layout, int widthMode){
+		final BenchmarkSegmentControlView view = create(count, layout);
+		final int widthMeasureSpec = View.MeasureSpec.makeMeasureSpec(WIDTH, widthMode);
+		final int heightMeasureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+		return time(SAMPLES, new Step() {
+			@Override
+			public void run(int i) {
+				view.measureOnly(widthMeasureSpec, heightMeasureSpec);
+			}
+		});
+	}
+
+	/**
+	 * a frame of a selected segment, or with the gradient half way between two segments
+	 */
+	private long[] draw(int count, String layout, boolean gradient){
+		final BenchmarkSegmentControlView view = create(count, layout);
+		if(gradient){
+			BenchmarkViewPager viewPager = new BenchmarkViewPager(RuntimeEnvironment.application);
+			view.setGradient(true);
+			view.setViewPager(viewPager);
+			viewPager.setScrollState(ViewPager.SCROLL_STATE_DRAGGING);
+			viewPager.scroll(0, 0.5f);
+			view.runFrame();
+		}
+		final Canvas canvas = createCanvas(view);
+		return time(SAMPLES, new Step() {
+			@Override
+			public void run(int i) {
+				view.draw(canvas);
+			}
+		});
+	}
+
+	/**
+	 * a touch down on a segment and its cancel: getTouchedIndex() finds the segment and both
+	 * invalidate it. the touches are spread over the whole width so that every hit is a search
+	 */
+	private long[] touch(int count, String layout){
+		final BenchmarkSegmentControlView view = create(count, layout);
+		long now = SystemClock.uptimeMillis();
+		final MotionEvent[] downs = new MotionEvent[TOUCHES_PER_SAMPLE];
+		final MotionEvent cancel = MotionEvent.obtain(now, now, MotionEvent.ACTION_CANCEL, 0, 0, 0);
+		for(int i = 0; i < downs.length; i++){
+			float x = (i * 37 % TOUCHES_PER_SAMPLE + 0.5f) * view.getWidth() / TOUCHES_PER_SAMPLE;
+			downs[i] = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, x, view.getHeight() / 2, 0);
+		}
+		long[] samples = time(SAMPLES, new Step() {
+			@Override
+			public void run(int i) {
+				for(MotionEvent down : downs){
+					view.onTouchEvent(down);
+					view.onTouchEvent(cancel);
+				}
+			}
+		});
+		for(int i = 0; i < samples.length; i++){
+			samples[i] /= TOUCHES_PER_SAMPLE;
+		}
+		return samples;
+	}
+
+	/**
+	 * setTexts() with texts of other widths, and the measure and draw which follow it
+	 */
+	private long[] setTexts(int count, String layout){
+		final BenchmarkSegmentControlView view = create(count, layout);
+		final String[][] texts = {texts(count, "segment "), texts(count, "tab ")};
+		final int widthMeasureSpec = View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY);
+		final int heightMeasureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+		final Canvas canvas = createCanvas(view);
+		return time(SAMPLES, new Step() {
+			@Override
+			public void run(int i) {
+				view.setTexts(texts[i % 2]);
+				view.measureOnly(widthMeasureSpec, heightMeasureSpec);
+				view.draw(canvas);
+			}
+		});
+	}
+
+	/**
+	 * frames of a ViewPager dragged over every page and back in gradient mode:
+	 * the onPageScrolled() callback, the frame it posts and the draw.
+	 * there are more samples than SAMPLES if one sweep has more frames
+	 */
+	private long[] viewPagerSweep(int count, String layout){
+		final BenchmarkSegmentControlView view = create(count, layout);
+		final BenchmarkViewPager viewPager = new BenchmarkViewPager(RuntimeEnvironment.application);
+		view.setGradient(true);
+		view.setViewPager(viewPager);
+		viewPager.setScrollState(ViewPager.SCROLL_STATE_DRAGGING);
+		final Canvas canvas = createCanvas(view);
+		final int steps = (count - 1) * PAGER_STEPS;
+		return time(Math.max(SAMPLES, 2 * steps), new Step() {
+			@Override
+			public void run(int i) {
+				//in steps of 1 / PAGER_STEPS of a page, up to the last page and back to the first
+				int frame = i % (2 * steps);
+				int position = frame < steps ? frame + 1 : 2 * steps - frame - 1;
+				int page = position / PAGER_STEPS;
+				int step = position % PAGER_STEPS;
+				if(step == 0){
+					viewPager.select(page);
+				}
+				viewPager.scroll(page, step / (float)PAGER_STEPS);
+				view.runFrame();
+				view.draw(canvas);
+			}
+		});
+	}
+
+	/**
+	 * a laid out view of count segments, WIDTH wide in equal widths, or as wide as their texts
+	 * and scrolling if they are wider than WIDTH, as a long list of segments would be set up
+	 */
+	private BenchmarkSegmentControlView create(int count, String layout){
+		BenchmarkSegmentControlView view = new BenchmarkSegmentControlView(RuntimeEnvironment.application);
+		view.setTexts(texts(count, "segment "));
+		if(CONTENT_WIDTHS.equals(layout)){
+			view.setSegmentWidthMode(SegmentControlView.SEGMENT_WIDTH_MODE_CONTENT);
+			view.setScrollable(true);
+		}
+		view.setSelectionAnimationDuration(0);
+		view.setSelectedIndex(1);
+		view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+				View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+		view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+		view.runFrames();
+		return view;
+	}
+
+	/**
+	 * a canvas drawing into a bitmap of the size of the view
+	 */
+	private static Canvas createCanvas(View view){
+		return new Canvas(Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888));
+	}
+
+	private static String[] texts(int count, String prefix){
+		String[] texts = new String[count];
+		for(int i = 0; i < count; i++){
+			texts[i] = prefix + i;
+		}
+		return texts;
+	}
+
+	private interface Step {
+		/**
+		 * @param i counts the runs, warm-up runs included
+		 */
+		void run(int i);
+	}
+
+	/**
+	 * runs step WARM_UP_RUNS times for the JIT, then times it runs times
+	 * @return the nanoseconds of every timed run, sorted
+	 */
+	private static long[] time(int runs, Step step){
+		for(int i = 0; i < WARM_UP_RUNS; i++){
+			step.run(i);
+		}
+		long[] samples = new long[runs];
+		for(int i = 0; i < runs; i++){
+			long start = System.nanoTime();
+			step.run(WARM_UP_RUNS + i);
+			samples[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(samples);
+		return samples;
+	}
+
+	/**
+	 * @param samples sorted
+	 */
+	private static void appendResult(StringBuilder json, String name, long[] samples){
+		long total = 0;
+		for(long sample : samples){
+			total += sample;
+		}
+		json.append('"').append(name).append("\":{")
+			.append("\"count\":").append(samples.length)
+			.append(",\"totalNanos\":").append(total)
+			.append(",\"averageNanos\":").append(total / samples.length)
+			.append(",\"maxNanos\":").append(samples[samples.length - 1])
+			.append(",\"p50Nanos\":").append(percentile(samples, 0.5f))
+			.append(",\"p90Nanos\":").append(percentile(samples, 0.9f))
+			.append(",\"p99Nanos\":").append(percentile(samples, 0.99f))
+			.append('}');
+	}
+
+	private static long percentile(long[] sorted, float percentile){
+		int index = (int)Math.ceil(sorted.length * percentile) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	private static void write(String json) throws IOException {
+		File file = new File(System.getProperty("benchmark.output", "build/benchmark/results.json"));
+		File dir = file.getAbsoluteFile().getParentFile();
+		assertTrue(dir.isDirectory() || dir.mkdirs());
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try{
+			writer.write(json);
+		}finally{
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+/**
+ * the color math of SegmentControlDrawable and SegmentStyle: tables of the colors between
+ * normal and selected, so that no color is computed while drawing
+ */
+final class SegmentColors {
+
+	static final int COLOR_RAMP_STEPS = 256;	//quantization of gradient colors, see SegmentControlDrawable.getColorStep()
+	private static final double GAMMA = 2.2;
+
+	private SegmentColors(){
+	}
+
+	/**
+	 * fills the color ramps, each of COLOR_RAMP_STEPS + 1 entries
+	 */
+	static void buildColorRamps(int[] backgroundRamp, int[] pressedBackgroundRamp, int[] textRamp,
+			int backgroundNormal, int backgroundSelected, int textNormal, int textSelected,
+			float darkCoefficient, boolean gammaCorrect){
+		for(int step = 0; step <= COLOR_RAMP_STEPS; step++){
+			float fraction = (float)step / COLOR_RAMP_STEPS;
+			if(gammaCorrect){
+				backgroundRamp[step] = getEvaluateColorLinear(fraction, backgroundNormal, backgroundSelected);
+				textRamp[step] = getEvaluateColorLinear(fraction, textNormal, textSelected);
+			}else{
+				backgroundRamp[step] = getEvaluateColor(fraction, backgroundNormal, backgroundSelected);
+				textRamp[step] = getEvaluateColor(fraction, textNormal, textSelected);
+			}
+			pressedBackgroundRamp[step] = getDarkColor(backgroundRamp[step], darkCoefficient);
+		}
+		//keep the end points exact
+		backgroundRamp[0] = backgroundNormal;
+		backgroundRamp[COLOR_RAMP_STEPS] = backgroundSelected;
+		textRamp[0] = textNormal;
+		textRamp[COLOR_RAMP_STEPS] = textSelected;
+		pressedBackgroundRamp[0] = getDarkColor(backgroundNormal, darkCoefficient);
+		pressedBackgroundRamp[COLOR_RAMP_STEPS] = getDarkColor(backgroundSelected, darkCoefficient);
+	}
+
+	private static int getDarkColor(int color, float darkCoefficient){
+
+		int a = (color & 0xff000000) >>> 24;
+		int r = (color & 0x00ff0000) >>> 16;
+		int g = (color & 0x0000ff00) >>> 8;
+		int b = (color & 0x000000ff) >>> 0;
+
+		r = (int)(r * darkCoefficient);
+		g = (int)(g * darkCoefficient);
+		b = (int)(b * darkCoefficient);
+
+		return a << 24 | r << 16 | g << 8 | b;
+	}
+
+	private static int getEvaluateColor(float fraction, int startColor, int endColor){
+
+		int a, r, g, b;
+
+		int sA = (startColor & 0xff000000) >>> 24;
+		int sR = (startColor & 0x00ff0000) >>> 16;
+		int sG = (startColor & 0x0000ff00) >>> 8;
+		int sB = (startColor & 0x000000ff) >>> 0;
+
+		int eA = (endColor & 0xff000000) >>> 24;
+		int eR = (endColor & 0x00ff0000) >>> 16;
+		int eG = (endColor & 0x0000ff00) >>> 8;
+		int eB = (endColor & 0x000000ff) >>> 0;
+
+		a = (int)(sA + (eA - sA) * fraction);
+		r = (int)(sR + (eR - sR) * fraction);
+		g = (int)(sG + (eG - sG) * fraction);
+		b = (int)(sB + (eB - sB) * fraction);
+
+		return a << 24 | r << 16 | g << 8 | b;
+	}
+
+	/**
+	 * like getEvaluateColor, but interpolates r, g and b in linear light,
+	 * only used to build color tables, not per frame
+	 */
+	private static int getEvaluateColorLinear(float fraction, int startColor, int endColor){
+		int sA = (startColor & 0xff000000) >>> 24;
+		int eA = (endColor & 0xff000000) >>> 24;
+		int a = (int)(sA + (eA - sA) * fraction);
+		int r = getEvaluateComponentLinear(fraction, (startColor & 0x00ff0000) >>> 16, (endColor & 0x00ff0000) >>> 16);
+		int g = getEvaluateComponentLinear(fraction, (startColor & 0x0000ff00) >>> 8, (endColor & 0x0000ff00) >>> 8);
+		int b = getEvaluateComponentLinear(fraction, startColor & 0x000000ff, endColor & 0x000000ff);
+		return a << 24 | r << 16 | g << 8 | b;
+	}
+
+	private static int getEvaluateComponentLinear(float fraction, int start, int end){
+		double s = Math.pow(start / 255.0, GAMMA);
+		double e = Math.pow(end / 255.0, GAMMA);
+		double value = Math.pow(s + (e - s) * fraction, 1.0 / GAMMA);
+		return (int)(value * 255 + 0.5);
+	}
+}
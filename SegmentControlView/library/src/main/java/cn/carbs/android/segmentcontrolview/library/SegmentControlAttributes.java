@@ -0,0 +1,234 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * the scv_ attributes of one xml element, parsed once and shared by every SegmentControlView
+ * inflated from equal attributes, e.g. the rows of a list. an entry is keyed by the theme,
+ * the style attribute and the raw values of the element's scv_ attributes, and the whole
+ * cache is dropped when the configuration changes.
+ * the look is kept as a pooled SegmentStyle, so those views share its paints as well.
+ * parsed values are immutable, views copy the texts array before they use it.
+ */
+final class SegmentControlAttributes {
+
+	private static final int MAX_ENTRIES = 32;
+	private static final String ATTRIBUTE_PREFIX = "scv_";
+
+	private static final Key sProbe = new Key();
+	private static Configuration sConfiguration = null;
+
+	private static final Cache sCache = new Cache();
+
+	final SegmentStyle style;
+	final CharSequence[] texts;	//null if not set
+	final int textMaxLines;
+	final int selectedIndex;
+	final boolean gradient;
+	final boolean scrollable;
+	final int renderMode;
+	final int segmentWidthMode;
+	final int selectionAnimationDuration;
+	final boolean outlineClip;
+
+	private SegmentControlAttributes(Context context, AttributeSet attrs){
+		TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.SegmentControlView);
+
+		SegmentStyle.Builder builder = new SegmentStyle.Builder(context);
+		int colorBackgroundSelected = SegmentControlDrawable.DEFAULT_COLOR_BACKGROUND_SELECTED;
+		int colorBackgroundNormal = SegmentControlDrawable.DEFAULT_COLOR_BACKGROUND_NORMAL;
+		int colorTextSelected = SegmentControlDrawable.DEFAULT_COLOR_TEXT_SELECTED;
+		int colorTextNormal = SegmentControlDrawable.DEFAULT_COLOR_TEXT_NORMAL;
+		int segmentPaddingHorizontal = SegmentControlDrawable.DEFAULT_SEGMENT_PADDING_HORIZONTAL;
+		int segmentPaddingVertical = SegmentControlDrawable.DEFAULT_SEGMENT_PADDING_VERTICAL;
+		CharSequence[] texts = null;
+		int textMaxLines = SegmentControlDrawable.DEFAULT_TEXT_MAX_LINES;
+		int selectedIndex = SegmentControlView.DEFAULT_SELECTED_INDEX;
+		boolean gradient = SegmentControlView.DEFAULT_IS_GRADIENT;
+		boolean scrollable = SegmentControlView.DEFAULT_IS_SCROLLABLE;
+		int renderMode = SegmentControlView.DEFAULT_RENDER_MODE;
+		int segmentWidthMode = SegmentControlView.DEFAULT_SEGMENT_WIDTH_MODE;
+		int selectionAnimationDuration = SegmentControlView.DEFAULT_SELECTION_ANIMATION_DURATION_MS;
+		boolean outlineClip = SegmentControlView.DEFAULT_OUTLINE_CLIP;
+
+		int n = a.getIndexCount();
+		for (int i = 0; i < n; i++) {
+			int attr = a.getIndex(i);
+			if(attr == R.styleable.SegmentControlView_scv_BackgroundSelectedColor){
+				colorBackgroundSelected = a.getColor(attr, SegmentControlDrawable.DEFAULT_COLOR_BACKGROUND_SELECTED);
+			}else if(attr == R.styleable.SegmentControlView_scv_BackgroundNormalColor){
+				colorBackgroundNormal = a.getColor(attr, SegmentControlDrawable.DEFAULT_COLOR_BACKGROUND_NORMAL);
+			}else if(attr == R.styleable.SegmentControlView_scv_TextSelectedColor){
+				colorTextSelected = a.getColor(attr, SegmentControlDrawable.DEFAULT_COLOR_TEXT_SELECTED);
+			}else if(attr == R.styleable.SegmentControlView_scv_TextNormalColor){
+				colorTextNormal = a.getColor(attr, SegmentControlDrawable.DEFAULT_COLOR_TEXT_NORMAL);
+			}else if(attr == R.styleable.SegmentControlView_scv_FrameColor){
+				builder.setFrameColor(a.getColor(attr, SegmentControlDrawable.DEFAULT_COLOR_FRAME));
+			}else if(attr == R.styleable.SegmentControlView_scv_TextSize){
+				builder.setTextSize(a.getDimensionPixelSize(attr, SegmentControlDrawable.sp2px(context, SegmentControlDrawable.DEFAULT_TEXT_SIZE_SP)));
+			}else if(attr == R.styleable.SegmentControlView_scv_TextArray){
+				texts = a.getTextArray(attr);
+			}else if(attr == R.styleable.SegmentControlView_scv_FrameWidth){
+				builder.setFrameWidth(a.getDimensionPixelSize(attr, SegmentControlDrawable.DEFAULT_FRAME_WIDTH_PX));
+			}else if(attr == R.styleable.SegmentControlView_scv_FrameCornerRadius){
+				builder.setFrameCornerRadius(a.getDimensionPixelSize(attr, SegmentControlDrawable.DEFAULT_FRAME_CORNER_RADIUS_PX));
+			}else if(attr == R.styleable.SegmentControlView_scv_SelectedIndex){
+				selectedIndex = a.getInteger(attr, SegmentControlView.DEFAULT_SELECTED_INDEX);
+			}else if(attr == R.styleable.SegmentControlView_scv_SegmentPaddingHorizontal){
+				segmentPaddingHorizontal = a.getDimensionPixelSize(attr, SegmentControlDrawable.DEFAULT_SEGMENT_PADDING_HORIZONTAL);
+			}else if(attr == R.styleable.SegmentControlView_scv_SegmentPaddingVertical){
+				segmentPaddingVertical = a.getDimensionPixelSize(attr, SegmentControlDrawable.DEFAULT_SEGMENT_PADDING_VERTICAL);
+			}else if(attr == R.styleable.SegmentControlView_scv_Gradient){
+				gradient = a.getBoolean(attr, SegmentControlView.DEFAULT_IS_GRADIENT);
+			}else if(attr == R.styleable.SegmentControlView_scv_RenderMode){
+				renderMode = a.getInt(attr, SegmentControlView.DEFAULT_RENDER_MODE);
+			}else if(attr == R.styleable.SegmentControlView_scv_SegmentWidthMode){
+				segmentWidthMode = a.getInt(attr, SegmentControlView.DEFAULT_SEGMENT_WIDTH_MODE);
+			}else if(attr == R.styleable.SegmentControlView_scv_Scrollable){
+				scrollable = a.getBoolean(attr, SegmentControlView.DEFAULT_IS_SCROLLABLE);
+			}else if(attr == R.styleable.SegmentControlView_scv_TextMaxLines){
+				textMaxLines = a.getInt(attr, SegmentControlDrawable.DEFAULT_TEXT_MAX_LINES);
+			}else if(attr == R.styleable.SegmentControlView_scv_SelectionAnimationDuration){
+				selectionAnimationDuration = a.getInt(attr, SegmentControlView.DEFAULT_SELECTION_ANIMATION_DURATION_MS);
+			}else if(attr == R.styleable.SegmentControlView_scv_OutlineClip){
+				outlineClip = a.getBoolean(attr, SegmentControlView.DEFAULT_OUTLINE_CLIP);
+			}
+		}
+		a.recycle();
+
+		this.style = builder.setBackgroundColor(colorBackgroundNormal, colorBackgroundSelected)
+				.setTextColor(colorTextNormal, colorTextSelected)
+				.setSegmentPadding(segmentPaddingHorizontal, segmentPaddingVertical)
+				.build();
+		this.texts = texts;
+		this.textMaxLines = textMaxLines;
+		this.selectedIndex = selectedIndex;
+		this.gradient = gradient;
+		this.scrollable = scrollable;
+		this.renderMode = renderMode;
+		this.segmentWidthMode = segmentWidthMode;
+		this.selectionAnimationDuration = selectionAnimationDuration;
+		this.outlineClip = outlineClip;
+	}
+
+	/**
+	 * @return the parsed attributes, shared with every element of equal attributes, null if attrs is null
+	 */
+	static synchronized SegmentControlAttributes obtain(Context context, AttributeSet attrs){
+		if(attrs == null){
+			return null;
+		}
+		Configuration configuration = context.getResources().getConfiguration();
+		if(sConfiguration == null || !sConfiguration.equals(configuration)){
+			//dimensions, texts and colors may all resolve differently now
+			sCache.clear();
+			sConfiguration = new Configuration(configuration);
+		}
+		sProbe.set(context.getTheme(), attrs);
+		SegmentControlAttributes entry = sCache.get(sProbe);
+		if(entry == null){
+			entry = new SegmentControlAttributes(context, attrs);
+			Key key = new Key();
+			key.set(context.getTheme(), attrs);
+			sCache.put(key, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * the parsed attributes in access order, the least recently inflated are dropped first
+	 */
+	private static final class Cache extends LinkedHashMap<Key, SegmentControlAttributes> {
+
+		private static final long serialVersionUID = 1L;
+
+		Cache(){
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, SegmentControlAttributes> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	}
+
+	/**
+	 * theme, style attribute and raw scv_ attribute values of one element
+	 */
+	private static final class Key {
+		private WeakReference<Resources.Theme> theme;
+		private int style;
+		private String[] names = new String[0];
+		private String[] values = new String[0];
+		private int count;
+		private int hash;
+
+		private void set(Resources.Theme theme, AttributeSet attrs){
+			if(this.theme == null || this.theme.get() != theme){
+				this.theme = new WeakReference<Resources.Theme>(theme);
+			}
+			style = attrs.getStyleAttribute();
+			int h = System.identityHashCode(theme);
+			h = 31 * h + style;
+			count = 0;
+			int n = attrs.getAttributeCount();
+			for(int i = 0; i < n; i++){
+				String name = attrs.getAttributeName(i);
+				if(name == null || !name.startsWith(ATTRIBUTE_PREFIX)){
+					continue;
+				}
+				if(count == names.length){
+					String[] grownNames = new String[Math.max(4, 2 * count)];
+					String[] grownValues = new String[grownNames.length];
+					System.arraycopy(names, 0, grownNames, 0, count);
+					System.arraycopy(values, 0, grownValues, 0, count);
+					names = grownNames;
+					values = grownValues;
+				}
+				String value = attrs.getAttributeValue(i);
+				names[count] = name;
+				values[count] = value;
+				count++;
+				h = 31 * h + name.hashCode();
+				h = 31 * h + (value == null ? 0 : value.hashCode());
+			}
+			hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) return true;
+			if(!(o instanceof Key)) return false;
+			Key k = (Key)o;
+			if(hash != k.hash || style != k.style || count != k.count){
+				return false;
+			}
+			Resources.Theme t = theme == null ? null : theme.get();
+			if(t == null || t != (k.theme == null ? null : k.theme.get())){
+				return false;
+			}
+			for(int i = 0; i < count; i++){
+				if(!names[i].equals(k.names[i])){
+					return false;
+				}
+				if(values[i] == null ? k.values[i] != null : !values[i].equals(k.values[i])){
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
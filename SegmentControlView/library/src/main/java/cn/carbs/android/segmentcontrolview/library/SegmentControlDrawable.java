@@ -0,0 +1,1430 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Outline;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.text.BoringLayout;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+/**
+ * the segments of a SegmentControlView as a Drawable: texts, colors, frame, measuring and
+ * hit-testing, without any View. SegmentControlView draws through one of these, and it can be
+ * drawn on its own wherever a View per control costs too much, e.g. in a RecyclerView item
+ * decoration or inside a compound view:
+ * 	SegmentControlDrawable segments = new SegmentControlDrawable(context);
+ * 	segments.setTexts(texts);
+ * 	segments.setSelectedIndex(1);
+ * 	segments.setBounds(0, 0, segments.getIntrinsicWidth(), segments.getIntrinsicHeight());
+ * 	segments.draw(canvas);
+ * 	...
+ * 	int touched = segments.getSegmentIndexAt(x, y);
+ *
+ * selection, pressed state and a gradient between two segments are set from outside,
+ * the drawable only draws them. only use it on the UI thread.
+ * once texts are laid out, draw() and getSegmentIndexAt() allocate nothing,
+ * keep it that way: paths, layouts and arrays are built when dirty and reused.
+ */
+public class SegmentControlDrawable extends Drawable {
+
+	/**
+	 * every segment gets the same width
+	 */
+	public static final int SEGMENT_WIDTH_MODE_EQUAL = 0;
+	/**
+	 * every segment gets a width proportional to its text's width plus horizontal padding
+	 */
+	public static final int SEGMENT_WIDTH_MODE_CONTENT = 1;
+
+	static final float TOUCHED_BACKGROUND_DARK_COEFFICIENT = 0.95F;
+
+	private static final int COLOR_PRIMARY_NORMAL = 0XFFFFFFFF;
+	private static final int COLOR_PRIMARY_SELECTED = 0XFF2CA99F;
+
+	static final int DEFAULT_COLOR_BACKGROUND_SELECTED = COLOR_PRIMARY_SELECTED;
+	static final int DEFAULT_COLOR_BACKGROUND_NORMAL = COLOR_PRIMARY_NORMAL;
+	static final int DEFAULT_COLOR_TEXT_SELECTED = COLOR_PRIMARY_NORMAL;
+	static final int DEFAULT_COLOR_TEXT_NORMAL = COLOR_PRIMARY_SELECTED;
+	static final int DEFAULT_COLOR_FRAME = COLOR_PRIMARY_SELECTED;
+	static final int DEFAULT_TEXT_SIZE_SP = 16;
+	static final int DEFAULT_TEXT_MAX_LINES = 1;
+	static final int DEFAULT_FRAME_WIDTH_PX = 2;
+	static final int DEFAULT_FRAME_CORNER_RADIUS_PX = 0;
+	static final int DEFAULT_SEGMENT_PADDING_HORIZONTAL = 16;
+	static final int DEFAULT_SEGMENT_PADDING_VERTICAL = 12;
+
+	private final Resources resources;
+
+	private CharSequence[] mTexts = null;
+	private int mTextMaxLines = DEFAULT_TEXT_MAX_LINES;
+	private int mColorBackgroundSelected = DEFAULT_COLOR_BACKGROUND_SELECTED;
+	private int mColorBackgroundNormal = DEFAULT_COLOR_BACKGROUND_NORMAL;
+	private int mColorTextSelected = DEFAULT_COLOR_TEXT_SELECTED;
+	private int mColorTextNormal = DEFAULT_COLOR_TEXT_NORMAL;
+	private int mColorFrame = DEFAULT_COLOR_FRAME;
+	private int mFrameWidth = DEFAULT_FRAME_WIDTH_PX;
+	private int mFrameCornerRadius = DEFAULT_FRAME_CORNER_RADIUS_PX;
+	private int mTextSize;
+	private int mSegmentPaddingHorizontal = DEFAULT_SEGMENT_PADDING_HORIZONTAL;
+	private int mSegmentPaddingVertical = DEFAULT_SEGMENT_PADDING_VERTICAL;
+	private int mSegmentWidthMode = SEGMENT_WIDTH_MODE_EQUAL;
+	private float[] mSegmentWeights = null;	//if set, overrides mSegmentWidthMode
+	private float mTouchedDarkCoefficient = TOUCHED_BACKGROUND_DARK_COEFFICIENT;
+	private boolean mGammaCorrectGradient = false;
+	private boolean mSinglePass = false;
+	private boolean mCornersClipped = false;	//the canvas is clipped to getOutline(), fills need no arcs
+	private SegmentStyle mSegmentStyle = null;	//shared look, null when this drawable owns its paints
+	private int mAlpha = 255;
+	private ColorFilter mColorFilter = null;
+
+	//segment selectionPosition is selected by 1 - selectionOffset, the next one by selectionOffset
+	private int selectionPosition = 0;
+	private float selectionOffset = 0f;
+	private int pressedIndex = -1;
+
+	private TextPaint paintText;
+	private Paint paintBackground;
+	private Paint paintFrame;
+
+	//segmentOffsets[i] is the left and segmentOffsets[i + 1] the right edge of segment i
+	private float[] segmentOffsets;
+	private final RectF rectF = new RectF();
+	private final RectF rectFArc = new RectF();
+	private Path[] segmentPaths;	//outline of every segment, built lazily once per geometry change
+	private int[] segmentPathGenerations;	//geometryGeneration segmentPaths[i] was built in
+	private int geometryGeneration = 0;
+	private boolean geometryDirty = true;
+
+	//laid out and ellipsized text of every segment, see getTextLayout()
+	private Layout[] textLayouts;
+	private int[] textLayoutWidths;	//width textLayouts[i] was built for
+	private boolean textLayoutsDirty = true;
+	private BoringLayout.Metrics boringMetrics;
+
+	//colors from normal (index 0) to selected (index COLOR_RAMP_STEPS), see ensureColorTables()
+	private int[] backgroundRamp;
+	private int[] pressedBackgroundRamp;
+	private int[] textRamp;
+	private boolean colorTablesDirty = true;
+
+	//used if mSinglePass, rebuilt when geometryGeneration changes
+	private Path outlinePath;
+	private int outlinePathGeneration;
+	private float[] separatorPoints;
+	private int separatorPointsGeneration;
+
+	//max width and height of mTexts, valid until texts, text size or configuration change
+	private boolean textMetricsDirty = true;
+	private int maxTextWidth;
+	private int[] textWidths;
+	private int[] textHeights;
+	private int maxTextHeight;
+	private boolean textsOwned = false;	//false while mTexts may be shared, see setText()
+
+	//reused by clip culling, see updateVisibleSegments()
+	private final Rect clipBounds = new Rect();
+	private int visibleFirst;
+	private int visibleLast;
+	private int lastHitIndex = -1;
+
+	public SegmentControlDrawable(Context context){
+		this(context, null);
+	}
+
+	/**
+	 * @param style look to start with, its paints are shared instead of allocating own ones,
+	 * null for the defaults
+	 */
+	public SegmentControlDrawable(Context context, SegmentStyle style){
+		resources = context.getResources();
+		if(style != null){
+			setSegmentStyle(style);
+			return;
+		}
+		mTextSize = sp2px(context, DEFAULT_TEXT_SIZE_SP);
+
+		paintText = new TextPaint();
+		paintText.setAntiAlias(true);
+		paintText.setTextSize(mTextSize);
+
+		paintBackground = new Paint();
+		paintBackground.setAntiAlias(true);
+		paintBackground.setStyle(Paint.Style.FILL);
+
+		paintFrame = new Paint();
+		paintFrame.setAntiAlias(true);
+		paintFrame.setStyle(Paint.Style.STROKE);
+		paintFrame.setStrokeWidth(mFrameWidth);
+		paintFrame.setColor(mColorFrame);
+	}
+
+	/**
+	 * set texts of segments, spans of styled texts are kept
+	 * @param texts at least two texts
+	 */
+	public void setTexts(CharSequence[] texts){
+		if(texts == null || texts.length < 2){
+			throw new IllegalArgumentException("SegmentControlDrawable's content text array'length should larger than 1");
+		}
+		if(checkIfEqual(mTexts, texts)){
+			return;
+		}
+		if(mSegmentWeights != null && mSegmentWeights.length != texts.length){
+			mSegmentWeights = null;
+		}
+		mTexts = texts;
+		textsOwned = false;
+		if(pressedIndex >= texts.length){
+			pressedIndex = -1;
+		}
+		lastHitIndex = -1;
+		textMetricsDirty = true;
+		textLayoutsDirty = true;
+		geometryDirty = true;
+		invalidateSelf();
+	}
+
+	/**
+	 * set the text of one segment, only this text is measured and laid out again.
+	 * the array given to setTexts() is copied before the first change, it is left as it is
+	 * @return false if the text was equal to the current one
+	 */
+	public boolean setText(int index, CharSequence text){
+		checkIndex(index, getCount());
+		CharSequence old = mTexts[index];
+		if(old == text || (old instanceof String && old.equals(text))){
+			return false;
+		}
+		ensureTextsOwned(mTexts.length);
+		mTexts[index] = text;
+		if(textLayouts != null && !textLayoutsDirty){
+			textLayouts[index] = null;
+		}
+		if(!textMetricsDirty){
+			int oldWidth = textWidths[index];
+			measureText(index);
+			updateMaxTextMetrics();
+			if(textWidths[index] != oldWidth && mSegmentWeights == null
+					&& mSegmentWidthMode == SEGMENT_WIDTH_MODE_CONTENT){
+				//the segments are as wide as their texts
+				geometryDirty = true;
+			}
+		}
+		invalidateSelf();
+		return true;
+	}
+
+	/**
+	 * insert a segment before index, the other segments keep their measured texts and layouts.
+	 * segment weights are dropped as by setTexts() with another count
+	 * @param index from 0 to getCount()
+	 */
+	public void insertSegment(int index, CharSequence text){
+		int count = getCount();
+		if(count < 2){
+			throw new IllegalArgumentException("SegmentControlDrawable's texts should be set before segments are inserted");
+		}
+		checkIndex(index, count + 1);
+		CharSequence[] texts = new CharSequence[count + 1];
+		System.arraycopy(mTexts, 0, texts, 0, index);
+		System.arraycopy(mTexts, index, texts, index + 1, count - index);
+		texts[index] = text;
+		mTexts = texts;
+		textsOwned = true;
+		if(!textMetricsDirty){
+			textWidths = insertSlot(textWidths, index, count);
+			textHeights = insertSlot(textHeights, index, count);
+			measureText(index);
+			updateMaxTextMetrics();
+		}
+		if(textLayouts != null && !textLayoutsDirty){
+			Layout[] layouts = new Layout[count + 1];
+			System.arraycopy(textLayouts, 0, layouts, 0, index);
+			System.arraycopy(textLayouts, index, layouts, index + 1, count - index);
+			textLayouts = layouts;
+			textLayoutWidths = insertSlot(textLayoutWidths, index, count);
+		}
+		onSegmentCountChanged();
+	}
+
+	/**
+	 * remove the segment at index, the other segments keep their measured texts and layouts.
+	 * segment weights are dropped as by setTexts() with another count
+	 */
+	public void removeSegment(int index){
+		int count = getCount();
+		if(count <= 2){
+			throw new IllegalArgumentException("SegmentControlDrawable's content text array'length should larger than 1");
+		}
+		checkIndex(index, count);
+		CharSequence[] texts = new CharSequence[count - 1];
+		System.arraycopy(mTexts, 0, texts, 0, index);
+		System.arraycopy(mTexts, index + 1, texts, index, count - index - 1);
+		mTexts = texts;
+		textsOwned = true;
+		if(!textMetricsDirty){
+			textWidths = removeSlot(textWidths, index, count);
+			textHeights = removeSlot(textHeights, index, count);
+			updateMaxTextMetrics();
+		}
+		if(textLayouts != null && !textLayoutsDirty){
+			Layout[] layouts = new Layout[count - 1];
+			System.arraycopy(textLayouts, 0, layouts, 0, index);
+			System.arraycopy(textLayouts, index + 1, layouts, index, count - index - 1);
+			textLayouts = layouts;
+			textLayoutWidths = removeSlot(textLayoutWidths, index, count);
+		}
+		onSegmentCountChanged();
+	}
+
+	private void onSegmentCountChanged(){
+		mSegmentWeights = null;
+		pressedIndex = -1;
+		lastHitIndex = -1;
+		geometryDirty = true;
+		invalidateSelf();
+	}
+
+	/**
+	 * copies mTexts once, so changing a segment never writes into an array owned by the caller
+	 * or shared by views inflated from equal attributes
+	 */
+	private void ensureTextsOwned(int count){
+		if(!textsOwned){
+			CharSequence[] texts = new CharSequence[count];
+			System.arraycopy(mTexts, 0, texts, 0, count);
+			mTexts = texts;
+			textsOwned = true;
+		}
+	}
+
+	private static void checkIndex(int index, int count){
+		if(index < 0 || index >= count){
+			throw new IllegalArgumentException("SegmentControlDrawable's index " + index + " is out of range [0, " + count + ")");
+		}
+	}
+
+	private static int[] insertSlot(int[] array, int index, int count){
+		int[] grown = new int[count + 1];
+		System.arraycopy(array, 0, grown, 0, index);
+		System.arraycopy(array, index, grown, index + 1, count - index);
+		return grown;
+	}
+
+	private static int[] removeSlot(int[] array, int index, int count){
+		int[] shrunk = new int[count - 1];
+		System.arraycopy(array, 0, shrunk, 0, index);
+		System.arraycopy(array, index + 1, shrunk, index, count - index - 1);
+		return shrunk;
+	}
+
+	/**
+	 * @return a copy of the texts, null if not set. the array held by this drawable may be
+	 * shared with other drawables, e.g. those inflated from equal xml attributes
+	 */
+	public CharSequence[] getTexts(){
+		if(mTexts == null){
+			return null;
+		}
+		CharSequence[] texts = new CharSequence[mTexts.length];
+		System.arraycopy(mTexts, 0, texts, 0, mTexts.length);
+		return texts;
+	}
+
+	public CharSequence getText(int index){
+		checkIndex(index, getCount());
+		return mTexts[index];
+	}
+
+	/**
+	 * @return true if texts would not change anything if set, compares without copying
+	 */
+	boolean hasTexts(CharSequence[] texts){
+		return checkIfEqual(mTexts, texts);
+	}
+
+	public int getCount(){
+		return mTexts == null ? 0 : mTexts.length;
+	}
+
+	public void setTextColor(int textColorNormal, int textColorSelected){
+		if(mColorTextNormal == textColorNormal && mColorTextSelected == textColorSelected){
+			return;
+		}
+		detachSegmentStyle();
+		mColorTextNormal = textColorNormal;
+		mColorTextSelected = textColorSelected;
+		colorTablesDirty = true;
+		invalidateSelf();
+	}
+
+	public int getTextColorNormal(){
+		return mColorTextNormal;
+	}
+
+	public int getTextColorSelected(){
+		return mColorTextSelected;
+	}
+
+	public void setBackgroundColor(int backgroundColorNormal, int backgroundColorSelected){
+		if(mColorBackgroundNormal == backgroundColorNormal && mColorBackgroundSelected == backgroundColorSelected){
+			return;
+		}
+		detachSegmentStyle();
+		mColorBackgroundNormal = backgroundColorNormal;
+		mColorBackgroundSelected = backgroundColorSelected;
+		colorTablesDirty = true;
+		invalidateSelf();
+	}
+
+	public int getBackgroundColorNormal(){
+		return mColorBackgroundNormal;
+	}
+
+	public int getBackgroundColorSelected(){
+		return mColorBackgroundSelected;
+	}
+
+	public void setFrameColor(int frameColor){
+		if(mColorFrame == frameColor){
+			return;
+		}
+		detachSegmentStyle();
+		mColorFrame = frameColor;
+		paintFrame.setColor(frameColor);
+		invalidateSelf();
+	}
+
+	public int getFrameColor(){
+		return mColorFrame;
+	}
+
+	public void setFrameWidth(int frameWidth){
+		if(mFrameWidth == frameWidth){
+			return;
+		}
+		detachSegmentStyle();
+		mFrameWidth = frameWidth;
+		paintFrame.setStrokeWidth(frameWidth);
+		geometryDirty = true;
+		invalidateSelf();
+	}
+
+	public int getFrameWidth(){
+		return mFrameWidth;
+	}
+
+	public void setFrameCornerRadius(int frameCornerRadius){
+		if(mFrameCornerRadius == frameCornerRadius){
+			return;
+		}
+		detachSegmentStyle();
+		mFrameCornerRadius = frameCornerRadius;
+		geometryDirty = true;
+		invalidateSelf();
+	}
+
+	public int getFrameCornerRadius(){
+		return mFrameCornerRadius;
+	}
+
+	public void setTextSize(int textSize){
+		if(mTextSize == textSize){
+			return;
+		}
+		detachSegmentStyle();
+		mTextSize = textSize;
+		paintText.setTextSize(textSize);
+		textMetricsDirty = true;
+		textLayoutsDirty = true;
+		geometryDirty = true;
+		invalidateSelf();
+	}
+
+	public int getTextSize(){
+		return mTextSize;
+	}
+
+	/**
+	 * @param typeface Typeface, null for the default one
+	 */
+	public void setTypeface(Typeface typeface){
+		if(paintText.getTypeface() == typeface){
+			return;
+		}
+		detachSegmentStyle();
+		paintText.setTypeface(typeface);
+		textMetricsDirty = true;
+		textLayoutsDirty = true;
+		geometryDirty = true;
+		invalidateSelf();
+	}
+
+	public Typeface getTypeface(){
+		return paintText.getTypeface();
+	}
+
+	/**
+	 * @param maxLines how many lines a text may wrap to, 1 or more
+	 */
+	public void setTextMaxLines(int maxLines){
+		if(maxLines < 1){
+			throw new IllegalArgumentException("SegmentControlDrawable's max lines of text should be at least 1");
+		}
+		if(mTextMaxLines == maxLines){
+			return;
+		}
+		mTextMaxLines = maxLines;
+		textLayoutsDirty = true;
+		invalidateSelf();
+	}
+
+	public int getTextMaxLines(){
+		return mTextMaxLines;
+	}
+
+	/**
+	 * padding around every text, used by getIntrinsicWidth() and getIntrinsicHeight()
+	 */
+	public void setSegmentPadding(int horizontal, int vertical){
+		if(mSegmentPaddingHorizontal == horizontal && mSegmentPaddingVertical == vertical){
+			return;
+		}
+		detachSegmentStyle();
+		mSegmentPaddingHorizontal = horizontal;
+		mSegmentPaddingVertical = vertical;
+		geometryDirty = true;
+		invalidateSelf();
+	}
+
+	public int getSegmentPaddingHorizontal(){
+		return mSegmentPaddingHorizontal;
+	}
+
+	public int getSegmentPaddingVertical(){
+		return mSegmentPaddingVertical;
+	}
+
+	/**
+	 * @param segmentWidthMode SEGMENT_WIDTH_MODE_EQUAL or SEGMENT_WIDTH_MODE_CONTENT
+	 */
+	public void setSegmentWidthMode(int segmentWidthMode){
+		if(mSegmentWidthMode == segmentWidthMode){
+			return;
+		}
+		mSegmentWidthMode = segmentWidthMode;
+		geometryDirty = true;
+		invalidateSelf();
+	}
+
+	public int getSegmentWidthMode(){
+		return mSegmentWidthMode;
+	}
+
+	/**
+	 * @param weights one positive weight per segment, null to use the segment width mode again
+	 */
+	public void setSegmentWeights(float[] weights){
+		if(weights != null){
+			if(mTexts == null || weights.length != mTexts.length){
+				throw new IllegalArgumentException("SegmentControlDrawable's segment weights' length should equal to the count of texts");
+			}
+			for(float weight : weights){
+				if(!(weight > 0)){
+					throw new IllegalArgumentException("SegmentControlDrawable's segment weights should be positive");
+				}
+			}
+			weights = weights.clone();
+		}
+		mSegmentWeights = weights;
+		geometryDirty = true;
+		invalidateSelf();
+	}
+
+	/**
+	 * @param darkCoefficient in (0, 1], 1 means no pressed effect
+	 */
+	public void setTouchedDarkCoefficient(float darkCoefficient){
+		if(mTouchedDarkCoefficient == darkCoefficient){
+			return;
+		}
+		detachSegmentStyle();
+		mTouchedDarkCoefficient = darkCoefficient;
+		colorTablesDirty = true;
+		invalidateSelf();
+	}
+
+	public float getTouchedDarkCoefficient(){
+		return mTouchedDarkCoefficient;
+	}
+
+	public void setGammaCorrectGradient(boolean gammaCorrect){
+		if(mGammaCorrectGradient == gammaCorrect){
+			return;
+		}
+		detachSegmentStyle();
+		mGammaCorrectGradient = gammaCorrect;
+		colorTablesDirty = true;
+		invalidateSelf();
+	}
+
+	public boolean getGammaCorrectGradient(){
+		return mGammaCorrectGradient;
+	}
+
+	/**
+	 * @param singlePass set to fill and stroke the outline once and draw all separators in
+	 * one call, see SegmentControlView.RENDER_MODE_SINGLE_PASS
+	 */
+	public void setSinglePass(boolean singlePass){
+		if(mSinglePass != singlePass){
+			mSinglePass = singlePass;
+			invalidateSelf();
+		}
+	}
+
+	public boolean getSinglePass(){
+		return mSinglePass;
+	}
+
+	/**
+	 * set when whatever draws this drawable clips to its rounded outline, e.g. a View with
+	 * setClipToOutline(true) and an outline from getOutline(). segments are then filled as
+	 * plain rectangles and the rounded frame is stroked once, as in single pass
+	 * @param cornersClipped set if the canvas is clipped to the outline
+	 */
+	public void setCornersClipped(boolean cornersClipped){
+		if(mCornersClipped != cornersClipped){
+			mCornersClipped = cornersClipped;
+			invalidateSelf();
+		}
+	}
+
+	public boolean getCornersClipped(){
+		return mCornersClipped;
+	}
+
+	/**
+	 * look like the given style and share its paints and color tables, changing a single
+	 * value afterwards gives this drawable its own copies again
+	 * @param style SegmentStyle, null to stop sharing and keep the current look
+	 */
+	public void setSegmentStyle(SegmentStyle style){
+		if(style == null){
+			detachSegmentStyle();
+			return;
+		}
+		if(mSegmentStyle == style){
+			return;
+		}
+		mSegmentStyle = style;
+		mColorBackgroundNormal = style.backgroundColorNormal;
+		mColorBackgroundSelected = style.backgroundColorSelected;
+		mColorTextNormal = style.textColorNormal;
+		mColorTextSelected = style.textColorSelected;
+		mColorFrame = style.frameColor;
+		mFrameWidth = style.frameWidth;
+		mFrameCornerRadius = style.frameCornerRadius;
+		mTextSize = style.textSize;
+		mSegmentPaddingHorizontal = style.segmentPaddingHorizontal;
+		mSegmentPaddingVertical = style.segmentPaddingVertical;
+		mTouchedDarkCoefficient = style.touchedDarkCoefficient;
+		mGammaCorrectGradient = style.gammaCorrectGradient;
+		paintText = style.getTextPaint();
+		paintBackground = style.getBackgroundPaint();
+		paintFrame = style.getFramePaint();
+		backgroundRamp = style.getBackgroundRamp();
+		pressedBackgroundRamp = style.getPressedBackgroundRamp();
+		textRamp = style.getTextRamp();
+		colorTablesDirty = false;
+		textMetricsDirty = true;
+		textLayoutsDirty = true;
+		geometryDirty = true;
+		invalidateSelf();
+	}
+
+	public SegmentStyle getSegmentStyle(){
+		return mSegmentStyle;
+	}
+
+	/**
+	 * before changing a single value, take own copies of what is shared with the style
+	 */
+	private void detachSegmentStyle(){
+		if(mSegmentStyle == null){
+			return;
+		}
+		mSegmentStyle = null;
+		paintText = new TextPaint(paintText);
+		paintBackground = new Paint(paintBackground);
+		paintFrame = new Paint(paintFrame);
+		backgroundRamp = null;
+		pressedBackgroundRamp = null;
+		textRamp = null;
+		colorTablesDirty = true;
+		//the cached layouts hold the shared paint
+		textLayoutsDirty = true;
+	}
+
+	public void setSelectedIndex(int selectedIndex){
+		setSelection(selectedIndex, 0f);
+	}
+
+	/**
+	 * draws the selection between two segments, as while a ViewPager is swiped
+	 * @param position segment which is selected by 1 - offset
+	 * @param offset in [0, 1), how much the segment after position is selected
+	 */
+	public void setSelection(int position, float offset){
+		if(selectionPosition != position || selectionOffset != offset){
+			selectionPosition = position;
+			selectionOffset = offset;
+			invalidateSelf();
+		}
+	}
+
+	/**
+	 * @param index segment drawn in its pressed color, -1 for none
+	 */
+	public void setPressedIndex(int index){
+		if(pressedIndex != index){
+			pressedIndex = index;
+			invalidateSelf();
+		}
+	}
+
+	public int getPressedIndex(){
+		return pressedIndex;
+	}
+
+	/**
+	 * how much segment i looks selected, 0 is fully normal and 1 is fully selected
+	 */
+	float getSelectedFraction(int i){
+		if(i == selectionPosition){
+			return 1f - selectionOffset;
+		}else if(i == selectionPosition + 1){
+			return selectionOffset;
+		}
+		return 0f;
+	}
+
+	/**
+	 * @return the segment at x, y in the coordinates of the bounds, -1 if there is none
+	 */
+	public int getSegmentIndexAt(float x, float y){
+		if(isTextArrayEmpty(mTexts)){
+			return -1;
+		}
+		ensureGeometry();
+		if(!rectF.contains(x, y)){
+			return -1;
+		}
+		//fast path, the finger is usually still in the segment it touched last
+		if(lastHitIndex >= 0 && lastHitIndex < mTexts.length
+				&& segmentOffsets[lastHitIndex] <= x && x < segmentOffsets[lastHitIndex + 1]){
+			return lastHitIndex;
+		}
+		lastHitIndex = findSegment(segmentOffsets, mTexts.length, x);
+		return lastHitIndex;
+	}
+
+	/**
+	 * bounds of segment i, including the frame stroke around it
+	 */
+	public void getSegmentBounds(int i, Rect outBounds){
+		ensureGeometry();
+		outBounds.set((int)Math.floor(segmentOffsets[i] - mFrameWidth),
+				(int)Math.floor(rectF.top - mFrameWidth),
+				(int)Math.ceil(segmentOffsets[i + 1] + mFrameWidth),
+				(int)Math.ceil(rectF.bottom + mFrameWidth));
+	}
+
+	float getSegmentLeft(int i){
+		ensureGeometry();
+		return segmentOffsets[i];
+	}
+
+	float getSegmentRight(int i){
+		ensureGeometry();
+		return segmentOffsets[i + 1];
+	}
+
+	/**
+	 * the width all segments need to show their texts with padding
+	 */
+	@Override
+	public int getIntrinsicWidth() {
+		int maxWidth = 0;
+		if(mTexts != null){
+			ensureTextMetrics();
+			int extraWidth = 2 * mSegmentPaddingHorizontal + 2 * mFrameWidth;
+			if(mSegmentWeights != null){
+				//the narrowest width in which every text fits its weighted share
+				float unitPerWeight = 0;
+				float weightSum = 0;
+				for(int i = 0; i < mTexts.length; i++){
+					unitPerWeight = Math.max(unitPerWeight, (textWidths[i] + extraWidth) / mSegmentWeights[i]);
+					weightSum += mSegmentWeights[i];
+				}
+				maxWidth = (int)Math.ceil(unitPerWeight * weightSum);
+			}else if(mSegmentWidthMode == SEGMENT_WIDTH_MODE_CONTENT){
+				for(int i = 0; i < mTexts.length; i++){
+					maxWidth += textWidths[i] + extraWidth;
+				}
+			}else{
+				maxWidth = (maxTextWidth + extraWidth) * mTexts.length;
+			}
+		}
+		if(maxWidth < 2 * mFrameCornerRadius){
+			maxWidth = 2 * mFrameCornerRadius;
+		}
+		return maxWidth;
+	}
+
+	@Override
+	public int getIntrinsicHeight() {
+		ensureTextMetrics();
+		int maxHeightItem = maxTextHeight;
+		if(mTextMaxLines > 1){
+			//reserve room for the extra lines a text may wrap to
+			maxHeightItem += (mTextMaxLines - 1) * paintText.getFontMetricsInt(null);
+		}
+		int maxHeight = maxHeightItem + 2 * mSegmentPaddingVertical + 2 * mFrameWidth;
+		if(maxHeight < 2 * mFrameCornerRadius){
+			maxHeight = 2 * mFrameCornerRadius;
+		}
+		return maxHeight;
+	}
+
+	/**
+	 * the rounded rectangle of the frame's outer edge, used by SegmentControlView's outline clip
+	 */
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	@Override
+	public void getOutline(Outline outline) {
+		float inset = (float)Math.ceil(mFrameWidth / 2);
+		outline.setRoundRect(getBounds(), mFrameCornerRadius > 0 ? mFrameCornerRadius + inset : 0);
+	}
+
+	@Override
+	protected void onBoundsChange(Rect bounds) {
+		super.onBoundsChange(bounds);
+		geometryDirty = true;
+	}
+
+	@Override
+	public void draw(Canvas canvas) {
+		if(isTextArrayEmpty(mTexts)){
+			return;
+		}
+		ensureGeometry();
+		ensureColorTables();
+		preparePaints();
+		updateVisibleSegments(canvas);
+		if(mSinglePass || mCornersClipped){
+			drawSinglePass(canvas);
+			return;
+		}
+		for(int i = visibleFirst; i <= visibleLast; i++){
+			int step = getColorStep(getSelectedFraction(i));
+			int curBackgroundColor = pressedIndex == i ? pressedBackgroundRamp[step] : backgroundRamp[step];
+			drawSegment(canvas, i, curBackgroundColor, textRamp[step]);
+		}
+	}
+
+	/**
+	 * draws every segment in normal (step 0) or selected (step COLOR_RAMP_STEPS) colors,
+	 * regardless of selection and pressed state, used to pre-render layers
+	 */
+	void drawAllSegments(Canvas canvas, int step){
+		ensureGeometry();
+		ensureColorTables();
+		preparePaints();
+		for(int i = 0; i < mTexts.length; i++){
+			drawSegment(canvas, i, backgroundRamp[step], textRamp[step]);
+		}
+	}
+
+	void drawPressedSegment(Canvas canvas, int i){
+		ensureGeometry();
+		ensureColorTables();
+		preparePaints();
+		int step = getColorStep(getSelectedFraction(i));
+		drawSegment(canvas, i, pressedBackgroundRamp[step], textRamp[step]);
+	}
+
+	private void drawSegment(Canvas canvas, int i, int backgroundColor, int textColor){
+		paintBackground.setColor(applyAlpha(backgroundColor));
+		Path path = getSegmentPath(i);
+		canvas.drawPath(path, paintBackground);
+		canvas.drawPath(path, paintFrame);
+		drawSegmentText(canvas, i, textColor);
+	}
+
+	private void drawSegmentText(Canvas canvas, int i, int textColor){
+		Layout layout = getTextLayout(i);
+		if(layout != null){
+			TextPaint paint = layout.getPaint();
+			paint.setColor(applyAlpha(textColor));
+			if(paint != paintText){
+				//laid out on another thread with a copy of paintText, see TextLayoutSpec
+				paint.setColorFilter(mColorFilter);
+			}
+			int saveCount = canvas.save();
+			canvas.translate((segmentOffsets[i] + segmentOffsets[i + 1] - layout.getWidth()) / 2,
+					rectF.centerY() - layout.getHeight() / 2f);
+			layout.draw(canvas);
+			canvas.restoreToCount(saveCount);
+		}
+	}
+
+	/**
+	 * single pass: the normal background is one fill of the outline, only selected,
+	 * pressed or transitioning segments get a fill of their own, and every border is
+	 * stroked once at the end. if the corners are clipped, fills are plain rectangles
+	 */
+	private void drawSinglePass(Canvas canvas){
+		Path outline = getOutlinePath();
+		paintBackground.setColor(applyAlpha(backgroundRamp[0]));
+		if(mCornersClipped){
+			canvas.drawRect(rectF, paintBackground);
+		}else{
+			canvas.drawPath(outline, paintBackground);
+		}
+		for(int i = visibleFirst; i <= visibleLast; i++){
+			int step = getColorStep(getSelectedFraction(i));
+			if(pressedIndex == i){
+				paintBackground.setColor(applyAlpha(pressedBackgroundRamp[step]));
+				fillSegment(canvas, i);
+			}else if(step != 0){
+				paintBackground.setColor(applyAlpha(backgroundRamp[step]));
+				fillSegment(canvas, i);
+			}
+			drawSegmentText(canvas, i, textRamp[step]);
+		}
+		float[] separators = getSeparatorPoints();
+		if(separators.length > 0){
+			canvas.drawLines(separators, paintFrame);
+		}
+		canvas.drawPath(outline, paintFrame);
+	}
+
+	private void fillSegment(Canvas canvas, int i){
+		if(mCornersClipped){
+			canvas.drawRect(segmentOffsets[i], rectF.top, segmentOffsets[i + 1], rectF.bottom, paintBackground);
+		}else{
+			canvas.drawPath(getSegmentPath(i), paintBackground);
+		}
+	}
+
+	/**
+	 * paints may be shared with other drawables through a SegmentStyle,
+	 * so what differs per drawable is set before every draw
+	 */
+	private void preparePaints(){
+		paintFrame.setColor(applyAlpha(mColorFrame));
+		paintFrame.setColorFilter(mColorFilter);
+		paintBackground.setColorFilter(mColorFilter);
+		paintText.setColorFilter(mColorFilter);
+	}
+
+	private int applyAlpha(int color){
+		if(mAlpha == 255){
+			return color;
+		}
+		int alpha = (color >>> 24) * mAlpha / 255;
+		return (color & 0x00ffffff) | (alpha << 24);
+	}
+
+	@Override
+	public void setAlpha(int alpha) {
+		if(mAlpha != alpha){
+			mAlpha = alpha;
+			invalidateSelf();
+		}
+	}
+
+	@Override
+	public int getAlpha() {
+		return mAlpha;
+	}
+
+	@Override
+	public void setColorFilter(ColorFilter colorFilter) {
+		if(mColorFilter != colorFilter){
+			mColorFilter = colorFilter;
+			invalidateSelf();
+		}
+	}
+
+	@Override
+	public int getOpacity() {
+		return PixelFormat.TRANSLUCENT;
+	}
+
+	/**
+	 * forget measured texts, e.g. after the font scale changed
+	 */
+	void invalidateTextMetrics(){
+		TextMetricsCache.clear();
+		textMetricsDirty = true;
+		textLayoutsDirty = true;
+		geometryDirty = true;
+	}
+
+	/**
+	 * takes metrics of the current texts measured elsewhere, see SegmentControlView.setTextsAsync()
+	 */
+	void setTextMetrics(int[] widths, int[] heights, float fontScale){
+		int maxWidth = 0;
+		int maxHeight = 0;
+		for(int i = 0; i < mTexts.length; i++){
+			if(mTexts[i] instanceof String){
+				TextMetricsCache.put((String)mTexts[i], paintText, fontScale, widths[i], heights[i]);
+			}
+			maxWidth = Math.max(maxWidth, widths[i]);
+			maxHeight = Math.max(maxHeight, heights[i]);
+		}
+		textWidths = widths;
+		textHeights = heights;
+		maxTextWidth = maxWidth;
+		maxTextHeight = maxHeight;
+		textMetricsDirty = false;
+		geometryDirty = true;
+	}
+
+	TextPaint getTextPaint(){
+		return paintText;
+	}
+
+	/**
+	 * @return what another thread needs to lay out texts as this drawable would at its
+	 * current bounds, null if it has no bounds yet
+	 */
+	TextLayoutSpec getTextLayoutSpec(){
+		Rect bounds = getBounds();
+		if(bounds.isEmpty()){
+			return null;
+		}
+		return new TextLayoutSpec(this, bounds);
+	}
+
+	/**
+	 * takes layouts of the current texts built by TextLayoutSpec.layoutTexts(), ignored if the
+	 * max lines changed since. a layout built for another width is built again when drawn
+	 */
+	void setTextLayouts(TextLayoutSpec spec, Layout[] layouts, int[] layoutWidths){
+		if(mTexts == null || layouts.length != mTexts.length || spec.maxLines != mTextMaxLines){
+			return;
+		}
+		textLayouts = layouts;
+		textLayoutWidths = layoutWidths;
+		textLayoutsDirty = false;
+	}
+
+	/**
+	 * the bounds and settings that decide the width of each segment's text, taken on the
+	 * UI thread, so that the texts can be ellipsized and laid out on another one
+	 */
+	static final class TextLayoutSpec {
+		private final float left;
+		private final float right;
+		private final int widthMode;
+		private final float[] weights;	//never changed, setSegmentWeights() replaces the array
+		private final int paddingHorizontal;
+		private final int frameWidth;
+		private final int maxLines;
+
+		private TextLayoutSpec(SegmentControlDrawable d, Rect bounds){
+			float inset = (float)Math.ceil(d.mFrameWidth / 2);
+			left = bounds.left + inset;
+			right = bounds.right - inset;
+			widthMode = d.mSegmentWidthMode;
+			weights = d.mSegmentWeights;
+			paddingHorizontal = d.mSegmentPaddingHorizontal;
+			frameWidth = d.mFrameWidth;
+			maxLines = d.mTextMaxLines;
+		}
+
+		/**
+		 * lays out texts in the widths their segments would get, safe on any thread
+		 * @param textWidths measured widths of texts
+		 * @param paint owned by the caller, it becomes the paint of the layouts
+		 */
+		void layoutTexts(CharSequence[] texts, int[] textWidths, TextPaint paint, Layout[] outLayouts, int[] outWidths){
+			int count = texts.length;
+			float[] offsets = new float[count + 1];
+			//weights of another count are dropped by setTexts()
+			fillSegmentOffsets(offsets, left, right, widthMode, weights != null && weights.length == count ? weights : null,
+					textWidths, paddingHorizontal);
+			BoringLayout.Metrics boringMetrics = new BoringLayout.Metrics();
+			for(int i = 0; i < count; i++){
+				int width = (int)(offsets[i + 1] - offsets[i]) - 2 * frameWidth;
+				if(width > 0 && !TextUtils.isEmpty(texts[i])){
+					outLayouts[i] = makeTextLayout(texts[i], paint, width, maxLines, boringMetrics);
+					outWidths[i] = width;
+				}
+			}
+		}
+	}
+
+	private void ensureTextMetrics(){
+		if(!textMetricsDirty){
+			return;
+		}
+		if(mTexts != null){
+			if(textWidths == null || textWidths.length != mTexts.length){
+				textWidths = new int[mTexts.length];
+				textHeights = new int[mTexts.length];
+			}
+			for(int i = 0; i < mTexts.length; i++){
+				measureText(i);
+			}
+		}
+		updateMaxTextMetrics();
+		textMetricsDirty = false;
+	}
+
+	private void measureText(int i){
+		CharSequence item = mTexts[i];
+		if(item == null){
+			textWidths[i] = 0;
+			textHeights[i] = 0;
+			return;
+		}
+		TextMetricsCache.Metrics metrics = TextMetricsCache.get(item, paintText, resources.getConfiguration().fontScale);
+		textWidths[i] = metrics.width;
+		textHeights[i] = metrics.height;
+	}
+
+	private void updateMaxTextMetrics(){
+		int maxWidth = 0;
+		int maxHeight = 0;
+		if(mTexts != null){
+			for(int i = 0; i < mTexts.length; i++){
+				maxWidth = Math.max(textWidths[i], maxWidth);
+				maxHeight = Math.max(textHeights[i], maxHeight);
+			}
+		}
+		maxTextWidth = maxWidth;
+		maxTextHeight = maxHeight;
+	}
+
+	private void ensureGeometry(){
+		if(geometryDirty){
+			updateGeometry();
+		}
+	}
+
+	private void updateGeometry(){
+		geometryDirty = false;
+		rectF.set(getBounds());
+		float inset = (float)Math.ceil(mFrameWidth / 2);
+		rectF.inset(inset, inset);
+
+		rectFArc.left = 0;
+		rectFArc.top = 0;
+		rectFArc.right = 2 * mFrameCornerRadius;
+		rectFArc.bottom = 2 * mFrameCornerRadius;
+
+		geometryGeneration++;
+		if(isTextArrayEmpty(mTexts)){
+			return;
+		}
+		int count = mTexts.length;
+		updateSegmentOffsets(count);
+		if(segmentPaths == null || segmentPaths.length != count){
+			Path[] paths = new Path[count];
+			if(segmentPaths != null){
+				//keep the paths we already own, the others are allocated when first drawn
+				System.arraycopy(segmentPaths, 0, paths, 0, Math.min(count, segmentPaths.length));
+			}
+			segmentPaths = paths;
+			segmentPathGenerations = new int[count];
+		}
+	}
+
+	/**
+	 * the outline of segment i, built the first time it is needed after a geometry change,
+	 * so a long scrollable strip only builds the segments that are drawn
+	 */
+	private Path getSegmentPath(int i){
+		Path path = segmentPaths[i];
+		if(path == null){
+			path = new Path();
+			segmentPaths[i] = path;
+		}else if(segmentPathGenerations[i] == geometryGeneration){
+			return path;
+		}
+		buildSegmentPath(path, i, segmentPaths.length);
+		segmentPathGenerations[i] = geometryGeneration;
+		return path;
+	}
+
+	/**
+	 * splits rectF's width into the prefix sums segmentOffsets, shared by drawing and hit-testing
+	 */
+	private void updateSegmentOffsets(int count){
+		if(segmentOffsets == null || segmentOffsets.length != count + 1){
+			segmentOffsets = new float[count + 1];
+		}
+		if(mSegmentWeights == null && mSegmentWidthMode == SEGMENT_WIDTH_MODE_CONTENT){
+			ensureTextMetrics();
+		}
+		fillSegmentOffsets(segmentOffsets, rectF.left, rectF.right, mSegmentWidthMode, mSegmentWeights,
+				textWidths, mSegmentPaddingHorizontal);
+	}
+
+	/**
+	 * the offsets of offsets.length - 1 segments between left and right, static so that
+	 * TextLayoutSpec can split the width the same way on another thread
+	 */
+	private static void fillSegmentOffsets(float[] offsets, float left, float right, int widthMode,
+			float[] weights, int[] textWidths, int paddingHorizontal){
+		int count = offsets.length - 1;
+		float width = right - left;
+		offsets[0] = left;
+		if(weights == null && widthMode == SEGMENT_WIDTH_MODE_EQUAL){
+			float unitWidth = width / count;
+			for(int i = 1; i < count; i++){
+				offsets[i] = left + unitWidth * i;
+			}
+		}else{
+			float weightSum = 0;
+			for(int i = 0; i < count; i++){
+				weightSum += getSegmentWeight(i, weights, textWidths, paddingHorizontal);
+			}
+			float offset = 0;
+			for(int i = 1; i < count; i++){
+				offset += getSegmentWeight(i - 1, weights, textWidths, paddingHorizontal);
+				offsets[i] = left + width * offset / weightSum;
+			}
+		}
+		offsets[count] = right;
+	}
+
+	private static float getSegmentWeight(int i, float[] weights, int[] textWidths, int paddingHorizontal){
+		if(weights != null){
+			return weights[i];
+		}
+		return textWidths[i] + 2 * paddingHorizontal;
+	}
+
+	private void buildSegmentPath(Path path, int i, int count){
+		float left = segmentOffsets[i];
+		float right = segmentOffsets[i + 1];
+		path.reset();
+		if(i == 0){
+			path.moveTo(rectF.left, rectF.top + mFrameCornerRadius);
+			rectFArc.offsetTo(rectF.left, rectF.top);
+			path.arcTo(rectFArc, 180, 90);
+			path.lineTo(right, rectF.top);
+			path.lineTo(right, rectF.bottom);
+			path.lineTo(rectF.left + mFrameCornerRadius, rectF.bottom);
+			rectFArc.offsetTo(rectF.left, rectF.bottom - 2 * mFrameCornerRadius);
+			path.arcTo(rectFArc, 90, 90);
+		}else if(i == (count - 1)){
+			path.moveTo(left, rectF.top);
+			path.lineTo(rectF.right - mFrameCornerRadius, rectF.top);
+			rectFArc.offsetTo(rectF.right - 2 * mFrameCornerRadius, rectF.top);
+			path.arcTo(rectFArc, 270, 90);
+			path.lineTo(rectF.right, rectF.bottom - mFrameCornerRadius);
+			rectFArc.offsetTo(rectF.right - 2 * mFrameCornerRadius, rectF.bottom - 2 * mFrameCornerRadius);
+			path.arcTo(rectFArc, 0, 90);
+			path.lineTo(left, rectF.bottom);
+		}else{
+			path.moveTo(left, rectF.top);
+			path.lineTo(right, rectF.top);
+			path.lineTo(right, rectF.bottom);
+			path.lineTo(left, rectF.bottom);
+		}
+		path.close();
+	}
+
+	private Path getOutlinePath(){
+		if(outlinePath == null){
+			outlinePath = new Path();
+		}else if(outlinePathGeneration == geometryGeneration){
+			return outlinePath;
+		}
+		outlinePath.reset();
+		outlinePath.addRoundRect(rectF, mFrameCornerRadius, mFrameCornerRadius, Path.Direction.CW);
+		outlinePathGeneration = geometryGeneration;
+		return outlinePath;
+	}
+
+	/**
+	 * end points of the borders between segments, as drawLines() takes them
+	 */
+	private float[] getSeparatorPoints(){
+		int count = mTexts.length;
+		if(separatorPoints == null || separatorPoints.length != 4 * (count - 1)){
+			separatorPoints = new float[4 * (count - 1)];
+		}else if(separatorPointsGeneration == geometryGeneration){
+			return separatorPoints;
+		}
+		for(int i = 1; i < count; i++){
+			int j = 4 * (i - 1);
+			separatorPoints[j] = segmentOffsets[i];
+			separatorPoints[j + 1] = rectF.top;
+			separatorPoints[j + 2] = segmentOffsets[i];
+			separatorPoints[j + 3] = rectF.bottom;
+		}
+		separatorPointsGeneration = geometryGeneration;
+		return separatorPoints;
+	}
+
+	/**
+	 * the text of segment i laid out in the segment's width, built once and
+	 * reused until the text, the width, the text size or the typeface change
+	 * @return null if there is nothing to draw
+	 */
+	private Layout getTextLayout(int i){
+		int count = mTexts.length;
+		if(textLayouts == null || textLayouts.length != count){
+			textLayouts = new Layout[count];
+			textLayoutWidths = new int[count];
+		}else if(textLayoutsDirty){
+			for(int j = 0; j < count; j++){
+				textLayouts[j] = null;
+			}
+		}
+		textLayoutsDirty = false;
+		int width = (int)(segmentOffsets[i + 1] - segmentOffsets[i]) - 2 * mFrameWidth;
+		if(width <= 0 || TextUtils.isEmpty(mTexts[i])){
+			return null;
+		}
+		Layout layout = textLayouts[i];
+		if(layout == null || textLayoutWidths[i] != width){
+			if(boringMetrics == null){
+				boringMetrics = new BoringLayout.Metrics();
+			}
+			layout = makeTextLayout(mTexts[i], paintText, width, mTextMaxLines, boringMetrics);
+			textLayouts[i] = layout;
+			textLayoutWidths[i] = width;
+		}
+		return layout;
+	}
+
+	/**
+	 * @param boringMetrics reused for single line texts, the layout keeps no reference to it
+	 */
+	private static Layout makeTextLayout(CharSequence text, TextPaint paint, int width, int maxLines,
+			BoringLayout.Metrics boringMetrics){
+		if(maxLines > 1){
+			StaticLayout layout = new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_CENTER, 1f, 0f, true);
+			if(layout.getLineCount() <= maxLines){
+				return layout;
+			}
+			//keep the lines that fit and ellipsize the rest into the last one
+			int end = layout.getLineEnd(maxLines - 2);
+			CharSequence rest = TextUtils.ellipsize(text.subSequence(end, text.length()), paint, width, TextUtils.TruncateAt.END);
+			return new StaticLayout(TextUtils.concat(text.subSequence(0, end), rest), paint, width, Layout.Alignment.ALIGN_CENTER, 1f, 0f, true);
+		}
+		CharSequence ellipsized = TextUtils.ellipsize(text, paint, width, TextUtils.TruncateAt.END);
+		BoringLayout.Metrics boring = BoringLayout.isBoring(ellipsized, paint, boringMetrics);
+		if(boring != null){
+			return BoringLayout.make(ellipsized, paint, width, Layout.Alignment.ALIGN_CENTER, 1f, 0f, boring, true);
+		}
+		return new StaticLayout(ellipsized, paint, width, Layout.Alignment.ALIGN_CENTER, 1f, 0f, true);
+	}
+
+	/**
+	 * finds the segments intersecting the canvas clip with a binary search over segmentOffsets,
+	 * so drawing visits only them however many segments there are
+	 */
+	private void updateVisibleSegments(Canvas canvas){
+		int count = mTexts.length;
+		if(!canvas.getClipBounds(clipBounds)){
+			visibleFirst = 0;
+			visibleLast = count - 1;
+			return;
+		}
+		int first = findSegment(segmentOffsets, count, clipBounds.left - mFrameWidth);
+		visibleFirst = first < 0 ? 0 : first;
+		visibleLast = findSegment(segmentOffsets, count, clipBounds.right + mFrameWidth);
+	}
+
+	/**
+	 * binary search of the segment containing x
+	 * @return the last i in [0, count) with offsets[i] <= x, -1 if x is left of offsets[0]
+	 */
+	private static int findSegment(float[] offsets, int count, float x){
+		int low = 0;
+		int high = count - 1;
+		int found = -1;
+		while(low <= high){
+			int mid = (low + high) >>> 1;
+			if(offsets[mid] <= x){
+				found = mid;
+				low = mid + 1;
+			}else{
+				high = mid - 1;
+			}
+		}
+		return found;
+	}
+
+	static int getColorStep(float fraction){
+		return (int)(fraction * SegmentColors.COLOR_RAMP_STEPS + 0.5f);
+	}
+
+	/**
+	 * rebuilds the color tables after a color, the dark coefficient or the gradient's gamma changed,
+	 * so that drawing only indexes them: ramp[0] is the normal color, ramp[COLOR_RAMP_STEPS] the selected one
+	 */
+	private void ensureColorTables(){
+		if(!colorTablesDirty){
+			return;
+		}
+		if(backgroundRamp == null){
+			backgroundRamp = new int[SegmentColors.COLOR_RAMP_STEPS + 1];
+			pressedBackgroundRamp = new int[SegmentColors.COLOR_RAMP_STEPS + 1];
+			textRamp = new int[SegmentColors.COLOR_RAMP_STEPS + 1];
+		}
+		SegmentColors.buildColorRamps(backgroundRamp, pressedBackgroundRamp, textRamp,
+				mColorBackgroundNormal, mColorBackgroundSelected, mColorTextNormal, mColorTextSelected,
+				mTouchedDarkCoefficient, mGammaCorrectGradient);
+		colorTablesDirty = false;
+	}
+
+	private static boolean checkIfEqual(CharSequence[] a, CharSequence[] b){
+		if(a == null || b == null){
+			return a == b;
+		}
+		if(a.length != b.length){
+			return false;
+		}
+		for(int i = 0; i < a.length; i++){
+			//styled texts are only equal to themselves, their spans may differ
+			if(a[i] == b[i] || (a[i] instanceof String && a[i].equals(b[i]))){
+				continue;
+			}
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean isTextArrayEmpty(CharSequence[] array){
+		return (array == null || array.length == 0);
+	}
+
+	static int sp2px(Context context, float spValue){
+		final float fontScale = context.getResources().getDisplayMetrics().scaledDensity;
+		return (int)(spValue * fontScale + 0.5f);
+	}
+}
@@ -0,0 +1,132 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+/**
+ * a ready-made SegmentControlView.MetricsListener which keeps, for every event type,
+ * the count, the total and max duration and a histogram of durations.
+ * histogram buckets are powers of two of nanoseconds, bucket b counts durations in [2^(b-1), 2^b).
+ * all storage is allocated in the constructor, recording an event never allocates.
+ * it is not thread safe, read it on the UI thread like the view writes it.
+ *
+ * usage:
+ * 	SegmentControlMetrics metrics = new SegmentControlMetrics();
+ * 	segmentControlView.setMetricsListener(metrics);
+ * 	...
+ * 	long p90 = metrics.getPercentileNanos(MetricsListener.EVENT_DRAW, 0.9f);
+ * 	String json = metrics.toJson();	//to compare runs between releases
+ */
+public class SegmentControlMetrics implements SegmentControlView.MetricsListener {
+
+	public static final int BUCKET_COUNT = 40;	//the last bucket also holds everything above 2^38 ns
+
+	private static final String[] EVENT_NAMES = {
+		"draw", "measure", "sizeChanged", "invalidate", "touch", "viewPagerScroll"
+	};
+
+	private final long[] counts = new long[EVENT_COUNT];
+	private final long[] totalNanos = new long[EVENT_COUNT];
+	private final long[] maxNanos = new long[EVENT_COUNT];
+	private final long[][] buckets = new long[EVENT_COUNT][BUCKET_COUNT];
+
+	@Override
+	public void onMetric(SegmentControlView view, int event, long durationNanos) {
+		if(event < 0 || event >= EVENT_COUNT){
+			return;
+		}
+		counts[event]++;
+		totalNanos[event] += durationNanos;
+		if(durationNanos > maxNanos[event]){
+			maxNanos[event] = durationNanos;
+		}
+		buckets[event][getBucket(durationNanos)]++;
+	}
+
+	public long getCount(int event){
+		return counts[event];
+	}
+
+	public long getTotalNanos(int event){
+		return totalNanos[event];
+	}
+
+	public long getMaxNanos(int event){
+		return maxNanos[event];
+	}
+
+	public long getAverageNanos(int event){
+		return counts[event] == 0 ? 0 : totalNanos[event] / counts[event];
+	}
+
+	public long getBucketCount(int event, int bucket){
+		return buckets[event][bucket];
+	}
+
+	/**
+	 * @param event one of MetricsListener.EVENT_*
+	 * @param percentile in [0, 1], 0.5f for the median
+	 * @return upper bound in nanoseconds of the bucket holding the given percentile, 0 if nothing was recorded
+	 */
+	public long getPercentileNanos(int event, float percentile){
+		long count = counts[event];
+		if(count == 0){
+			return 0;
+		}
+		long target = (long)Math.ceil(count * percentile);
+		if(target < 1){
+			target = 1;
+		}
+		long seen = 0;
+		long[] eventBuckets = buckets[event];
+		for(int b = 0; b < BUCKET_COUNT; b++){
+			seen += eventBuckets[b];
+			if(seen >= target){
+				return b == BUCKET_COUNT - 1 ? maxNanos[event] : 1L << b;
+			}
+		}
+		return maxNanos[event];
+	}
+
+	public void reset(){
+		for(int event = 0; event < EVENT_COUNT; event++){
+			counts[event] = 0;
+			totalNanos[event] = 0;
+			maxNanos[event] = 0;
+			long[] eventBuckets = buckets[event];
+			for(int b = 0; b < BUCKET_COUNT; b++){
+				eventBuckets[b] = 0;
+			}
+		}
+	}
+
+	/**
+	 * @return a JSON object with one entry per event type, e.g.
+	 * {"draw":{"count":120,"totalNanos":...,"averageNanos":...,"maxNanos":...,"p50Nanos":...,"p90Nanos":...,"p99Nanos":...},...}
+	 */
+	public String toJson(){
+		StringBuilder sb = new StringBuilder(128 * EVENT_COUNT);
+		sb.append('{');
+		for(int event = 0; event < EVENT_COUNT; event++){
+			if(event > 0){
+				sb.append(',');
+			}
+			sb.append('"').append(EVENT_NAMES[event]).append("\":{")
+				.append("\"count\":").append(getCount(event))
+				.append(",\"totalNanos\":").append(getTotalNanos(event))
+				.append(",\"averageNanos\":").append(getAverageNanos(event))
+				.append(",\"maxNanos\":").append(getMaxNanos(event))
+				.append(",\"p50Nanos\":").append(getPercentileNanos(event, 0.5f))
+				.append(",\"p90Nanos\":").append(getPercentileNanos(event, 0.9f))
+				.append(",\"p99Nanos\":").append(getPercentileNanos(event, 0.99f))
+				.append('}');
+		}
+		sb.append('}');
+		return sb.toString();
+	}
+
+	private static int getBucket(long durationNanos){
+		if(durationNanos <= 0){
+			return 0;
+		}
+		int bucket = 64 - Long.numberOfLeadingZeros(durationNanos);
+		return bucket < BUCKET_COUNT ? bucket : BUCKET_COUNT - 1;
+	}
+}
@@ -1,19 +1,34 @@
 package cn.carbs.android.segmentcontrolview.library;
 
+import android.annotation.TargetApi;
 import android.content.Context;
-import android.content.res.TypedArray;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Outline;
 import android.graphics.Paint;
-import android.graphics.Path;
 import android.graphics.Rect;
-import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.support.v4.os.TraceCompat;
+import android.support.v4.view.ViewCompat;
 import android.support.v4.view.ViewPager;
-import android.text.TextUtils;
+import android.support.v4.widget.ScrollerCompat;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Layout;
+import android.text.TextPaint;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewOutlineProvider;
+import android.view.ViewTreeObserver;
+import android.view.animation.AnimationUtils;
+import android.view.animation.Interpolator;
 
-import java.lang.reflect.Field;
+import java.util.concurrent.Executor;
 
 /**
  * an SegmentControlView inspired by the UISegmentControl on IOS platform.
@@ -24,6 +39,9 @@ import java.lang.reflect.Field;
  * 	4. set titles in xml resource file
  * 	5. has pressed effect when finger touches this view, you can set the dark coefficient   
  * 
+ * segments are rendered, measured and hit-tested by a SegmentControlDrawable,
+ * this view adds touch, scrolling, animation and the ViewPager binding.
+ * 
  * Author	Carbs.Wang 
  * Email  	yeah0126#yeah.net
  */
@@ -36,639 +54,1959 @@ public class SegmentControlView extends View {
     	void onSegmentChanged(int newSelectedIndex);
     }
 	
-	private static final float TOUCHED_BACKGROUND_DARK_COEFFICIENT = 0.95F;
+	/**
+	 * unlike OnSegmentChangedListener, which is called at once for every change, the calls of
+	 * this listener are posted: onSelectionChanged at most once per frame with the latest index,
+	 * onSelectionSettled once the selection animation, the scrolling of this view and the
+	 * scrolling of a bound ViewPager are all idle. neither is called if the index ends up
+	 * where it was last reported.
+	 * fromUser is true if the change came from touching this view or dragging the bound ViewPager,
+	 * false if it came from setSelectedIndex() or a ViewPager moved by code.
+	 */
+	public interface OnSelectionChangeListener{
+		void onSelectionChanged(int selectedIndex, boolean fromUser);
+		void onSelectionSettled(int selectedIndex, boolean fromUser);
+	}
+	
+	/**
+	 * onMetric function will be triggered after each measured piece of work if a listener is set,
+	 * see SegmentControlMetrics for a ready-made implementation
+	 */
+	public interface MetricsListener{
+		int EVENT_DRAW = 0;
+		int EVENT_MEASURE = 1;
+		int EVENT_SIZE_CHANGED = 2;
+		int EVENT_INVALIDATE = 3;		//durationNanos is always 0
+		int EVENT_TOUCH = 4;
+		int EVENT_VIEWPAGER_SCROLL = 5;	//handling of one onPageScrolled callback, the redraw is an EVENT_DRAW
+		int EVENT_COUNT = 6;
+		
+		void onMetric(SegmentControlView view, int event, long durationNanos);
+	}
 	
-	private static final int COLOR_PRIMARY_NORMAL = 0XFFFFFFFF;
-	private static final int COLOR_PRIMARY_SELECTED = 0XFF2CA99F;
+	static final int DEFAULT_SELECTED_INDEX = 0;
+	static final boolean DEFAULT_IS_GRADIENT = false;
+	static final boolean DEFAULT_IS_SCROLLABLE = false;
+	static final boolean DEFAULT_OUTLINE_CLIP = false;
 	
-	private static final int DEFAULT_COLOR_BACKGROUND_SELECTED = COLOR_PRIMARY_SELECTED;
-	private static final int DEFAULT_COLOR_BACKGROUND_NORMAL = COLOR_PRIMARY_NORMAL;
-	private static final int DEFAULT_COLOR_TEXT_SELECTED = COLOR_PRIMARY_NORMAL;
-	private static final int DEFAULT_COLOR_TEXT_NORMAL = COLOR_PRIMARY_SELECTED;
-	private static final int DEFAULT_COLOR_FRAME = COLOR_PRIMARY_SELECTED;
-	private static final int DEFAULT_TEXT_SIZE_SP = 16;
-	private static final int DEFAULT_FRAME_WIDTH_PX = 2;
-	private static final int DEFAULT_FRAME_CORNER_RADIUS_PX = 0;
-	private static final int DEFAULT_SELECTED_INDEX = 0;
-	private static final int DEFAULT_SEGMENT_PADDING_HORIZONTAL = 16;
-	private static final int DEFAULT_SEGMENT_PADDING_VERTICAL = 12;
-	private static final boolean DEFAULT_IS_GRADIENT = false;
+	//trace sections, see setTraceEnabled()
+	private static final int TRACE_DRAW = 0;
+	private static final int TRACE_MEASURE = 1;
+	private static final int TRACE_SIZE_CHANGED = 2;
+	private static final int TRACE_TOUCH = 3;
+	private static final int TRACE_VIEWPAGER_SCROLL = 4;
+	private static final int TRACE_VIEWPAGER_FRAME = 5;
+	private static final int TRACE_SET_TEXTS = 6;
+	private static final String[] TRACE_SECTION_NAMES = {
+		"SegmentControlView.onDraw", "SegmentControlView.onMeasure", "SegmentControlView.onSizeChanged",
+		"SegmentControlView.onTouchEvent", "SegmentControlView.onPageScrolled",
+		"SegmentControlView.viewPagerFrame", "SegmentControlView.setTexts"
+	};
+	private static boolean sTraceEnabled = false;
+	private static final int OVERSCROLL_DISTANCE_DP = 24;
+	private static final int SCROLL_TO_SEGMENT_DURATION_MS = 250;
+	static final int DEFAULT_SELECTION_ANIMATION_DURATION_MS = 0;	//no animation, selection snaps
 	
-    private String[] mTexts = null;
-    
-    private int mColorBackgroundSelected = DEFAULT_COLOR_BACKGROUND_SELECTED;
-    private int mColorBackgroundNormal = DEFAULT_COLOR_BACKGROUND_NORMAL;
-    private int mColorTextSelected = DEFAULT_COLOR_TEXT_SELECTED;
-    private int mColorTextNormal = DEFAULT_COLOR_TEXT_NORMAL;
-    private int mColorFrame = DEFAULT_COLOR_FRAME;
-    private int mFrameWidth = DEFAULT_FRAME_WIDTH_PX;
-    private int mFrameCornerRadius = DEFAULT_FRAME_CORNER_RADIUS_PX;
+	/**
+	 * render mode that draws every segment's path and text on each frame
+	 */
+	public static final int RENDER_MODE_DEFAULT = 0;
+	/**
+	 * render mode that pre-renders the whole view once in normal and once in selected
+	 * colors, then each frame only composites the two layers with per-segment clip and alpha.
+	 * it costs two bitmaps of the view's size, which are released when the view is detached
+	 */
+	public static final int RENDER_MODE_LAYERS = 1;
+	/**
+	 * render mode that fills and strokes the outer outline once, draws all separators
+	 * in one drawLines() call and fills only the segments which are not in normal color,
+	 * so internal borders are not stroked twice and the display list stays short
+	 */
+	public static final int RENDER_MODE_SINGLE_PASS = 2;
+	static final int DEFAULT_RENDER_MODE = RENDER_MODE_DEFAULT;
+	
+	/**
+	 * every segment gets the same width
+	 */
+	public static final int SEGMENT_WIDTH_MODE_EQUAL = SegmentControlDrawable.SEGMENT_WIDTH_MODE_EQUAL;
+	/**
+	 * every segment gets a width proportional to its text's width plus horizontal padding
+	 */
+	public static final int SEGMENT_WIDTH_MODE_CONTENT = SegmentControlDrawable.SEGMENT_WIDTH_MODE_CONTENT;
+	static final int DEFAULT_SEGMENT_WIDTH_MODE = SEGMENT_WIDTH_MODE_EQUAL;
+	
+    //draws, measures and hit-tests the segments, in view coordinates
+    private final SegmentControlDrawable segmentDrawable;
     
-    private int mTextSize = 0;
     private int mSelectedIndex = DEFAULT_SELECTED_INDEX;
     
-    //used in wrap_content mode
-    private int mSegmentPaddingHorizontal = DEFAULT_SEGMENT_PADDING_HORIZONTAL;
-    private int mSegmentPaddingVertical = DEFAULT_SEGMENT_PADDING_VERTICAL;
-    
     private boolean mIsGradient = DEFAULT_IS_GRADIENT;
+    private boolean mIsScrollable = DEFAULT_IS_SCROLLABLE;
+    private int mSelectionAnimationDuration = DEFAULT_SELECTION_ANIMATION_DURATION_MS;
+    private Interpolator mSelectionInterpolator = null;	//null means decelerate
+    private int mRenderMode = DEFAULT_RENDER_MODE;
+    private boolean mOutlineClip = DEFAULT_OUTLINE_CLIP;
+    private boolean outlineClipApplied = false;	//true while the view clips to the drawable's outline
     private OnSegmentChangedListener mOnSegmentChangedListener;
+    private OnSelectionChangeListener mOnSelectionChangeListener;
+    private MetricsListener mMetricsListener;
+    private String[] traceNames;	//TRACE_SECTION_NAMES with count and render mode, see getTraceName()
+    private int traceNamesCount;
+    private int traceNamesRenderMode;
 	
-    private float unitWidth = 0;
-    private Paint paintText;		//painter of the text 
-    private Paint paintBackground;	//painter of the background
-    private Paint paintFrame;		//painter of the frame
-    private RectF rectF;
-    private RectF rectFArc;
-    private Path pathFrame;
+    //measure specs of the last onMeasure(), see requestLayoutIfSizeChanged()
+    private boolean hasMeasured = false;
+    private int lastWidthMeasureSpec;
+    private int lastHeightMeasureSpec;
+    
+    //inputs the drawable's bounds were set with, see ensureGeometry()
+    private boolean geometryDirty = true;
+    private int geometryPaddingLeft;
+    private int geometryPaddingTop;
+    private int geometryPaddingRight;
+    private int geometryPaddingBottom;
     
-    private float textCenterYOffset;
+    //used in RENDER_MODE_LAYERS, built lazily by ensureLayers()
+    private Bitmap layerNormal;
+    private Bitmap layerSelected;
+    private Paint paintLayer;
+    private Canvas layerCanvas;	//reused for every layer rendering
+    private boolean layersDirty = true;
+    
+    //reused by dirty-rect invalidation, see invalidateSegments()
+    private final Rect dirtyRect = new Rect();
+    private final Rect segmentBounds = new Rect();
+    
+    //used if mIsScrollable, see onTouchEvent() and computeScroll()
+    private int scrollRange = 0;	//max scrollX, 0 if all segments fit
+    private ScrollerCompat scroller;
+    private VelocityTracker velocityTracker;
+    private int touchSlop;
+    private int minFlingVelocity;
+    private int maxFlingVelocity;
+    private int overscrollDistance;
+    private float downX;
+    private float lastX;
+    private boolean isBeingDragged = false;
+    
+    private volatile int textsGeneration = 0;	//incremented by every setTexts(), see setTextsAsync()
     
     private int preTouchedIndex = -1;
     private int curTouchedIndex = -1;
 
     private ViewPager viewPager;
+    private InternalViewPagerListener viewPagerListener;
+    private boolean viewPagerBound = false;	//true while viewPagerListener is registered on viewPager
     
     public SegmentControlView(Context context) {
         super(context);
+        segmentDrawable = new SegmentControlDrawable(context);
         init();
     }
     public SegmentControlView(Context context, AttributeSet attrs) {
         super(context, attrs);
-        initAttr(context, attrs);
+        segmentDrawable = initAttr(context, attrs);
         init();
     }
     public SegmentControlView(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        initAttr(context, attrs);
+        segmentDrawable = initAttr(context, attrs);
         init();
     }
 
-    private void initAttr(Context context, AttributeSet attrs) {
-        if (attrs == null) {
-            return;
+    /**
+     * attributes are parsed once per theme, style and values and shared by every view
+     * inflated alike, so are the paints of their SegmentStyle
+     * @return the drawable configured by the attributes
+     */
+    private SegmentControlDrawable initAttr(Context context, AttributeSet attrs) {
+        SegmentControlAttributes a = SegmentControlAttributes.obtain(context, attrs);
+        if (a == null) {
+            return new SegmentControlDrawable(context);
         }
-
-        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.SegmentControlView);
-
-        int n = a.getIndexCount();
-        for (int i = 0; i < n; i++) {
-            int attr = a.getIndex(i);
-            if(attr == R.styleable.SegmentControlView_scv_BackgroundSelectedColor){
-            	mColorBackgroundSelected = a.getColor(attr, DEFAULT_COLOR_BACKGROUND_SELECTED);
-            }else if(attr == R.styleable.SegmentControlView_scv_BackgroundNormalColor){
-            	mColorBackgroundNormal = a.getColor(attr, DEFAULT_COLOR_BACKGROUND_NORMAL);
-            }else if(attr == R.styleable.SegmentControlView_scv_TextSelectedColor){
-            	mColorTextSelected = a.getColor(attr, DEFAULT_COLOR_TEXT_SELECTED);
-            }else if(attr == R.styleable.SegmentControlView_scv_TextNormalColor){
-            	mColorTextNormal = a.getColor(attr, DEFAULT_COLOR_TEXT_NORMAL);
-            }else if(attr == R.styleable.SegmentControlView_scv_FrameColor){
-            	mColorFrame = a.getColor(attr, DEFAULT_COLOR_FRAME);
-            }else if(attr == R.styleable.SegmentControlView_scv_TextSize){
-            	mTextSize = a.getDimensionPixelSize(attr, sp2px(getContext(), DEFAULT_TEXT_SIZE_SP));
-            }else if(attr == R.styleable.SegmentControlView_scv_TextArray){
-            	mTexts = convertCharSequenceToString(a.getTextArray(attr));
-            }else if(attr == R.styleable.SegmentControlView_scv_FrameWidth){
-            	mFrameWidth = a.getDimensionPixelSize(attr, DEFAULT_FRAME_WIDTH_PX);
-            }else if(attr == R.styleable.SegmentControlView_scv_FrameCornerRadius){
-            	mFrameCornerRadius = a.getDimensionPixelSize(attr, DEFAULT_FRAME_CORNER_RADIUS_PX);
-            }else if(attr == R.styleable.SegmentControlView_scv_SelectedIndex){
-            	mSelectedIndex = a.getInteger(attr, DEFAULT_SELECTED_INDEX);
-            }else if(attr == R.styleable.SegmentControlView_scv_SegmentPaddingHorizontal){
-            	mSegmentPaddingHorizontal = a.getDimensionPixelSize(attr, DEFAULT_SEGMENT_PADDING_HORIZONTAL);
-            }else if(attr == R.styleable.SegmentControlView_scv_SegmentPaddingVertical){
-            	mSegmentPaddingVertical = a.getDimensionPixelSize(attr, DEFAULT_SEGMENT_PADDING_VERTICAL);
-            }else if(attr == R.styleable.SegmentControlView_scv_Gradient){
-            	mIsGradient = a.getBoolean(attr, DEFAULT_IS_GRADIENT);
-            }
+        SegmentControlDrawable d = new SegmentControlDrawable(context, a.style);
+        if(a.texts != null && a.texts.length > 1){
+        	//the parsed array is shared by every view inflated alike, give this one its own
+        	d.setTexts(a.texts.clone());
         }
-        a.recycle();
+        d.setTextMaxLines(a.textMaxLines);
+        d.setSegmentWidthMode(a.segmentWidthMode);
+        mSelectedIndex = a.selectedIndex;
+        mIsGradient = a.gradient;
+        mIsScrollable = a.scrollable;
+        mRenderMode = a.renderMode;
+        mSelectionAnimationDuration = a.selectionAnimationDuration;
+        mOutlineClip = a.outlineClip;
+        return d;
     }
     
     private void init(){
-    	rectF = new RectF();
-    	rectFArc = new RectF();
-    	pathFrame = new Path();
-
-    	if(mTextSize == 0)
-    		mTextSize = sp2px(getContext(), DEFAULT_TEXT_SIZE_SP);
+    	segmentDrawable.setSinglePass(mRenderMode == RENDER_MODE_SINGLE_PASS);
     	
-    	paintText = new Paint();
-    	paintText.setAntiAlias(true);
-    	paintText.setTextAlign(Paint.Align.CENTER);
-    	paintText.setTextSize(mTextSize);
-        
-    	paintBackground = new Paint();
-    	paintBackground.setAntiAlias(true);
-    	paintBackground.setStyle(Paint.Style.FILL);
-        
-    	paintFrame = new Paint();
-    	paintFrame.setAntiAlias(true);
-    	paintFrame.setStyle(Paint.Style.STROKE);
-    	paintFrame.setStrokeWidth(mFrameWidth);
-    	paintFrame.setColor(mColorFrame);
-    	
-        textCenterYOffset = getTextCenterYOffset(paintText.getFontMetrics());
+        ViewConfiguration configuration = ViewConfiguration.get(getContext());
+        touchSlop = configuration.getScaledTouchSlop();
+        minFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        maxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+        overscrollDistance = (int)(OVERSCROLL_DISTANCE_DP * getResources().getDisplayMetrics().density + 0.5f);
         this.setClickable(true);
     }
     
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    	boolean traced = traceBegin(TRACE_MEASURE);
+    	long start = metricsStart();
     	super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-    	setMeasuredDimension(measureWidth(widthMeasureSpec, paintText), 
-        					 measureHeight(heightMeasureSpec, paintText));	
+    	lastWidthMeasureSpec = widthMeasureSpec;
+    	lastHeightMeasureSpec = heightMeasureSpec;
+    	hasMeasured = true;
+    	setMeasuredDimension(measureWidth(widthMeasureSpec), 
+        					 measureHeight(heightMeasureSpec));	
+    	metricsEnd(MetricsListener.EVENT_MEASURE, start);
+    	traceEnd(traced);
     }
     
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+    	boolean traced = traceBegin(TRACE_SIZE_CHANGED);
+    	long start = metricsStart();
         super.onSizeChanged(w, h, oldw, oldh);
-        
-        rectF.left = getPaddingLeft();
-        rectF.top = getPaddingTop();
-        rectF.right = w - getPaddingRight();
-        rectF.bottom = h - getPaddingBottom();
-        float inset = (float)Math.ceil(mFrameWidth / 2);
-        rectF.inset(inset, inset);
-
-        if(mTexts!= null && mTexts.length > 0){
-        	unitWidth = rectF.width() / mTexts.length;
-        }
-        
-        rectFArc.left = 0;
-		rectFArc.top = 0;
-		rectFArc.right = 2 * mFrameCornerRadius;
-		rectFArc.bottom = 2 * mFrameCornerRadius;
+        updateGeometry(w, h);
+        metricsEnd(MetricsListener.EVENT_SIZE_CHANGED, start);
+        traceEnd(traced);
     }
     
     @Override
     protected void onDraw(Canvas canvas) {
+    	boolean traced = traceBegin(TRACE_DRAW);
+    	long start = metricsStart();
         super.onDraw(canvas);
-        if(!isStringArrayEmpty(mTexts)){
+        if(getCount() > 0){
+        	ensureGeometry();
         	drawBackgroundAndFrameAndText(canvas);
         }
+        metricsEnd(MetricsListener.EVENT_DRAW, start);
+        traceEnd(traced);
+    }
+    
+    @Override
+    public void invalidate() {
+    	if(batchDepth > 0){
+    		batchInvalidateRequested = true;
+    		return;
+    	}
+    	super.invalidate();
+    	metricsEnd(MetricsListener.EVENT_INVALIDATE, 0);
+    }
+    
+    @Override
+    public void requestLayout() {
+    	if(batchDepth > 0){
+    		batchLayoutRequested = true;
+    		return;
+    	}
+    	super.requestLayout();
     }
     
     @Override
 	public boolean onTouchEvent(MotionEvent event) {
+    	boolean traced = traceBegin(TRACE_TOUCH);
+    	long start = metricsStart();
+    	if(mIsScrollable && scrollRange > 0 && handleScrollTouchEvent(event)){
+    		//a drag is not a click, so the event is not passed to super
+    		metricsEnd(MetricsListener.EVENT_TOUCH, start);
+    		traceEnd(traced);
+    		return true;
+    	}
 		preTouchedIndex = curTouchedIndex;
 		switch(event.getAction()){
 		case MotionEvent.ACTION_DOWN:
 			curTouchedIndex = getTouchedIndex(event.getX(), event.getY());
 			if(preTouchedIndex != curTouchedIndex){
-				invalidate();
+				invalidateSegments(preTouchedIndex, curTouchedIndex, -1);
 			}
 			break;
 		case MotionEvent.ACTION_MOVE:
 			curTouchedIndex = getTouchedIndex(event.getX(), event.getY());
 			if(preTouchedIndex != curTouchedIndex){
-				invalidate();
+				invalidateSegments(preTouchedIndex, curTouchedIndex, -1);
 			}
 			break;
 		case MotionEvent.ACTION_UP:
+			int oldSelectedIndex = mSelectedIndex;
 			curTouchedIndex = getTouchedIndex(event.getX(), event.getY());
 			if(curTouchedIndex != -1){
 				if(mOnSegmentChangedListener != null && mSelectedIndex != curTouchedIndex){
 					mOnSegmentChangedListener.onSegmentChanged(curTouchedIndex);
 				}
 				mSelectedIndex = curTouchedIndex;
+				scrollToSegment(mSelectedIndex, true);
+				if(oldSelectedIndex != mSelectedIndex){
+					postSelectionChange(true);
+				}
 			}
 			curTouchedIndex = -1;
-			if(mIsGradient && checkViewPagerOnPageChangeListener(this.viewPager)){
-				
+			if(mIsGradient && viewPagerBound){
+				//the ViewPager redraws the selection, only the pressed segment is ours
+				invalidateSegments(preTouchedIndex, -1, -1);
+			}else if(startSelectionAnimation(oldSelectedIndex, mSelectedIndex)){
+				invalidateSegments(preTouchedIndex, -1, -1);
 			}else{
-				invalidate();
+				invalidateSegments(preTouchedIndex, oldSelectedIndex, mSelectedIndex);
 			}
 			break;
 		case MotionEvent.ACTION_CANCEL:
 			curTouchedIndex = -1;
-			invalidate();
+			invalidateSegments(preTouchedIndex, -1, -1);
 			break;
 		}
-		return super.onTouchEvent(event);
+		boolean handled = super.onTouchEvent(event);
+		metricsEnd(MetricsListener.EVENT_TOUCH, start);
+		traceEnd(traced);
+		return handled;
 	}
     
+    /**
+     * drags and flings the strip if it is scrollable
+     * @return true if the event is consumed by scrolling, false to handle it as a tap
+     */
+    private boolean handleScrollTouchEvent(MotionEvent event){
+    	if(velocityTracker == null){
+    		velocityTracker = VelocityTracker.obtain();
+    	}
+    	velocityTracker.addMovement(event);
+    	float x = event.getX();
+    	switch(event.getAction() & MotionEvent.ACTION_MASK){
+    	case MotionEvent.ACTION_DOWN:
+    		ensureScroller();
+    		boolean wasFlinging = !scroller.isFinished();
+    		scroller.abortAnimation();
+    		downX = x;
+    		lastX = x;
+    		//touching a flinging strip only stops it
+    		isBeingDragged = wasFlinging;
+    		return isBeingDragged;
+    	case MotionEvent.ACTION_MOVE:
+    		if(!isBeingDragged && Math.abs(x - downX) > touchSlop){
+    			isBeingDragged = true;
+    			if(getParent() != null){
+    				getParent().requestDisallowInterceptTouchEvent(true);
+    			}
+    			setPressed(false);
+    			cancelLongPress();
+    			int pressedIndex = curTouchedIndex;
+    			curTouchedIndex = -1;
+    			invalidateSegments(pressedIndex, -1, -1);
+    		}
+    		if(isBeingDragged){
+    			int scrollX = getScrollX();
+    			int newScrollX = (int)(scrollX + lastX - x);
+    			newScrollX = Math.max(-overscrollDistance, Math.min(scrollRange + overscrollDistance, newScrollX));
+    			if(newScrollX != scrollX){
+    				scrollTo(newScrollX, 0);
+    			}
+    		}
+    		lastX = x;
+    		return isBeingDragged;
+    	case MotionEvent.ACTION_UP:
+    		if(isBeingDragged){
+    			velocityTracker.computeCurrentVelocity(1000, maxFlingVelocity);
+    			int velocity = (int)velocityTracker.getXVelocity();
+    			if(Math.abs(velocity) > minFlingVelocity){
+    				scroller.fling(getScrollX(), 0, -velocity, 0, 0, scrollRange, 0, 0, overscrollDistance, 0);
+    			}else{
+    				scroller.springBack(getScrollX(), 0, 0, scrollRange, 0, 0);
+    			}
+    			ViewCompat.postInvalidateOnAnimation(this);
+    		}
+    		return endDrag();
+    	case MotionEvent.ACTION_CANCEL:
+    		if(isBeingDragged && scroller.springBack(getScrollX(), 0, 0, scrollRange, 0, 0)){
+    			ViewCompat.postInvalidateOnAnimation(this);
+    		}
+    		return endDrag();
+    	}
+    	return isBeingDragged;
+    }
+    
+    private boolean endDrag(){
+    	boolean wasDragged = isBeingDragged;
+    	isBeingDragged = false;
+    	if(velocityTracker != null){
+    		velocityTracker.recycle();
+    		velocityTracker = null;
+    	}
+    	return wasDragged;
+    }
+    
+    @Override
+    public void computeScroll() {
+    	if(scroller != null && scroller.computeScrollOffset()){
+    		int x = scroller.getCurrX();
+    		if(x != getScrollX()){
+    			scrollTo(x, 0);
+    		}
+    		ViewCompat.postInvalidateOnAnimation(this);
+    	}
+    }
+    
+    private void ensureScroller(){
+    	if(scroller == null){
+    		scroller = ScrollerCompat.create(getContext());
+    	}
+    }
+    
+    private void stopScroll(){
+    	if(scroller != null){
+    		scroller.abortAnimation();
+    	}
+    }
+    
+    /**
+     * the scrollX which centers segment i, clamped to the scroll range
+     */
+    private int getCenteredScrollX(int i){
+    	float center = (segmentDrawable.getSegmentLeft(i) + segmentDrawable.getSegmentRight(i)) / 2;
+    	int target = Math.round(center - getWidth() / 2f);
+    	return Math.max(0, Math.min(scrollRange, target));
+    }
+    
     public void setTextSize(int textSize){
-    	if(this.mTextSize != textSize){
-    		this.mTextSize = textSize;
-    		paintText.setTextSize(textSize);
-    		textCenterYOffset = getTextCenterYOffset(paintText.getFontMetrics());
-    		requestLayout();
+    	if(segmentDrawable.getTextSize() != textSize){
+    		segmentDrawable.setTextSize(textSize);
+    		geometryDirty = true;
+    		layersDirty = true;
+    		requestLayoutIfSizeChanged();
+    		invalidate();
+    	}
+    }
+    
+    /**
+     * set the typeface of the texts
+     * @param typeface Typeface, null for the default one
+     */
+    public void setTypeface(Typeface typeface){
+    	if(segmentDrawable.getTypeface() != typeface){
+    		segmentDrawable.setTypeface(typeface);
+    		geometryDirty = true;
+    		layersDirty = true;
+    		requestLayoutIfSizeChanged();
+    		invalidate();
+    	}
+    }
+    
+    public Typeface getTypeface(){
+    	return segmentDrawable.getTypeface();
+    }
+    
+    /**
+     * set how many lines a segment's text may wrap to, a text which does not fit
+     * is ellipsized at the end of its last line
+     * @param maxLines 1 or more, default is 1
+     */
+    public void setTextMaxLines(int maxLines){
+    	if(maxLines < 1){
+    		throw new IllegalArgumentException("SegmentControlView's max lines of text should be at least 1");
+    	}
+    	if(segmentDrawable.getTextMaxLines() != maxLines){
+    		segmentDrawable.setTextMaxLines(maxLines);
+    		layersDirty = true;
+    		requestLayoutIfSizeChanged();
     		invalidate();
     	}
     }
     
+    public int getTextMaxLines(){
+    	return segmentDrawable.getTextMaxLines();
+    }
+    
     public int getSelectedIndex(){
     	return mSelectedIndex;
     }
     
     public void setSelectedIndex(int selectedIndex){
+    	setSelectedIndex(selectedIndex, false);
+    }
+    
+    private void setSelectedIndex(int selectedIndex, boolean fromUser){
     	if(mSelectedIndex != selectedIndex){
+    		int oldSelectedIndex = mSelectedIndex;
     		mSelectedIndex = selectedIndex;
     		if(mOnSegmentChangedListener != null){
     			mOnSegmentChangedListener.onSegmentChanged(mSelectedIndex);
     		}
-//    		invalidate();
-    		if(mIsGradient && checkViewPagerOnPageChangeListener(this.viewPager)){
+    		if(mIsGradient && viewPagerBound){
 			}else{
-				invalidate();
+				if(!startSelectionAnimation(oldSelectedIndex, selectedIndex)){
+					invalidateSegments(oldSelectedIndex, selectedIndex, -1);
+				}
+				scrollToSegment(selectedIndex, true);
 			}
+    		postSelectionChange(fromUser);
     	}
     }
     
     public void setTextColor(int textColorNormal, int textColorSelected){
-        this.mColorTextNormal = textColorNormal;
-        this.mColorTextSelected = textColorSelected;
+    	if(segmentDrawable.getTextColorNormal() == textColorNormal && segmentDrawable.getTextColorSelected() == textColorSelected){
+    		return;
+    	}
+    	segmentDrawable.setTextColor(textColorNormal, textColorSelected);
+        layersDirty = true;
         invalidate();
     }
     
     public void setBackgroundColor(int backgroundColorNormal, int backgroundColorSelected){
-        this.mColorBackgroundNormal = backgroundColorNormal;
-        this.mColorBackgroundSelected = backgroundColorSelected;
+    	if(segmentDrawable.getBackgroundColorNormal() == backgroundColorNormal && segmentDrawable.getBackgroundColorSelected() == backgroundColorSelected){
+    		return;
+    	}
+    	segmentDrawable.setBackgroundColor(backgroundColorNormal, backgroundColorSelected);
+        layersDirty = true;
         invalidate();
     }
     
     public void setFrameColor(int frameColor){
-    	this.mColorFrame = frameColor;
+    	if(segmentDrawable.getFrameColor() == frameColor){
+    		return;
+    	}
+    	segmentDrawable.setFrameColor(frameColor);
+    	layersDirty = true;
     	invalidate();
     }
     
     public void setFrameWidth(int frameWidth){
-    	this.mFrameWidth = frameWidth;
-    	requestLayout();
+    	if(segmentDrawable.getFrameWidth() == frameWidth){
+    		return;
+    	}
+    	segmentDrawable.setFrameWidth(frameWidth);
+    	geometryDirty = true;
+    	requestLayoutIfSizeChanged();
     	invalidate();
     }
     
-    public void setTexts(String[] texts){
-    	assertTextsValid(texts);
-    	if(texts == null || texts.length < 2){
-    		throw new IllegalArgumentException("SegmentControlView's content text array'length should larger than 1");
-    	}
-    	if(checkIfEqual(this.mTexts, texts)){
+    /**
+     * let this view look like the given style and share its paints and color tables with
+     * every other view using it. changing a single value afterwards, e.g. by setTextColor(),
+     * gives this view its own copies again.
+     * @param style SegmentStyle, null to stop sharing and keep the current look
+     */
+    public void setSegmentStyle(SegmentStyle style){
+    	if(style == null || segmentDrawable.getSegmentStyle() == style){
+    		segmentDrawable.setSegmentStyle(style);
     		return;
     	}
-    	this.mTexts = texts;
-       	unitWidth = rectF.width() / texts.length;
-       	requestLayout();
-       	invalidate();
+    	segmentDrawable.setSegmentStyle(style);
+    	geometryDirty = true;
+    	layersDirty = true;
+    	requestLayoutIfSizeChanged();
+    	invalidate();
     }
     
-    public int getCount(){
-    	if(mTexts == null) return 0;
-    	return mTexts.length;
+    public SegmentStyle getSegmentStyle(){
+    	return segmentDrawable.getSegmentStyle();
+    }
+    
+    public void setTexts(String[] texts){
+    	setTexts((CharSequence[])texts);
     }
     
     /**
-     * setViewPager(viewpager) to response to the change of ViewPager
-     * @param viewPager the viewPager you want segmentcontrolview to respond with
+     * set texts of segments, spans of styled texts are kept
+     * @param texts at least two texts
      */
-    public void setViewPager(ViewPager viewPager) {
-        this.viewPager = viewPager;
-        if (viewPager != null) {
-            viewPager.setOnPageChangeListener(new InternalViewPagerListener());
-        }
+    public void setTexts(CharSequence[] texts){
+    	assertTextsValid(texts);
+    	//a pending setTextsAsync() must not overwrite these texts later
+    	textsGeneration++;
+    	applyTexts(texts);
     }
     
     /**
-     * set if this view has the Gradient effect when segment changed
-     * @param gradient set if you want gradient effect
+     * like setTexts(), but the texts are measured on the given executor first and
+     * swapped in on the UI thread when done, so a long or complex set of texts does not
+     * cost the next frame. if this view already has a size, the texts are also ellipsized
+     * and laid out there in the widths their segments get at this size, a segment whose
+     * width differs when they are shown, e.g. because the view's size changed, is laid
+     * out again while drawing. a later setTexts() or setTextsAsync() supersedes this call,
+     * its result is then dropped.
+     * @param texts at least two texts, must not be changed until they are shown
+     * @param executor runs the measuring, e.g. AsyncTask.THREAD_POOL_EXECUTOR
      */
-    public void setGradient(boolean gradient){
-    	if(mIsGradient != gradient){
-    		mIsGradient = gradient;
+    public void setTextsAsync(CharSequence[] texts, Executor executor){
+    	assertTextsValid(texts);
+    	if(executor == null){
+    		throw new IllegalArgumentException("SegmentControlView's executor should not be null");
     	}
+    	float fontScale = getResources().getConfiguration().fontScale;
+    	executor.execute(new MeasureTextsTask(this, ++textsGeneration, texts, segmentDrawable.getTextPaint(), fontScale,
+    			segmentDrawable.getTextLayoutSpec()));
     }
     
-    public boolean getGradient(){
-    	return mIsGradient;
+    /**
+     * measures and, given a spec, lays out texts with its own copy of the paint, then hands
+     * the result to the view on the main thread
+     */
+    private static class MeasureTextsTask implements Runnable {
+    	
+    	private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    	
+    	private final SegmentControlView view;
+    	private final int generation;
+    	private final CharSequence[] texts;
+    	private final TextPaint paint;
+    	private final float fontScale;
+    	private final int[] widths;
+    	private final int[] heights;
+    	private final SegmentControlDrawable.TextLayoutSpec layoutSpec;	//null if the view has no size yet
+    	private final Layout[] layouts;
+    	private final int[] layoutWidths;
+    	
+    	MeasureTextsTask(SegmentControlView view, int generation, CharSequence[] texts, TextPaint paint, float fontScale,
+    			SegmentControlDrawable.TextLayoutSpec layoutSpec){
+    		this.view = view;
+    		this.generation = generation;
+    		this.texts = texts;
+    		this.paint = new TextPaint(paint);
+    		this.fontScale = fontScale;
+    		this.widths = new int[texts.length];
+    		this.heights = new int[texts.length];
+    		this.layoutSpec = layoutSpec;
+    		this.layouts = layoutSpec == null ? null : new Layout[texts.length];
+    		this.layoutWidths = layoutSpec == null ? null : new int[texts.length];
+    	}
+    	
+    	@Override
+    	public void run() {
+    		if(generation != view.textsGeneration){
+    			return;
+    		}
+    		Rect bounds = new Rect();
+    		for(int i = 0; i < texts.length; i++){
+    			widths[i] = TextMetricsCache.measureWidth(texts[i], paint);
+    			heights[i] = TextMetricsCache.measureHeight(texts[i], paint, bounds);
+    		}
+    		if(layoutSpec != null){
+    			//the layouts keep the paint, it is only used on the main thread from here on
+    			layoutSpec.layoutTexts(texts, widths, paint, layouts, layoutWidths);
+    		}
+    		sMainHandler.post(new Runnable() {
+    			@Override
+    			public void run() {
+    				view.onTextsMeasured(MeasureTextsTask.this);
+    			}
+    		});
+    	}
+    }
+    
+    private void onTextsMeasured(MeasureTextsTask task){
+    	if(task.generation != textsGeneration){
+    		//superseded while measuring
+    		return;
+    	}
+    	float fontScale = getResources().getConfiguration().fontScale;
+    	TextPaint paintText = segmentDrawable.getTextPaint();
+    	boolean sameStyle = task.fontScale == fontScale
+    			&& task.paint.getTextSize() == paintText.getTextSize()
+    			&& task.paint.getTypeface() == paintText.getTypeface();
+    	beginBatch();
+    	try{
+    		applyTexts(task.texts);
+    		if(sameStyle){
+    			segmentDrawable.setTextMetrics(task.widths, task.heights, fontScale);
+    			if(task.layoutSpec != null){
+    				segmentDrawable.setTextLayouts(task.layoutSpec, task.layouts, task.layoutWidths);
+    			}
+    		}
+    	}finally{
+    		endBatch();
+    	}
     }
     
     /**
-     * when segment changed, 
-     * mOnSegmentChangedListener.onSegmentChanged(newSelectedIndex) will be triggered
-     * @param listener OnSegmentChangedListener
+     * set the text of one segment, e.g. a count that changes often. only this text is measured
+     * and laid out again, the view is laid out again only if the texts' widest width or highest
+     * height changed, otherwise only the segment is redrawn.
+     * a pending setTextsAsync() still replaces all texts when it is done.
+     * @param index from 0 to getCount() - 1
      */
-    public void setOnSegmentChangedListener(OnSegmentChangedListener listener){
-		mOnSegmentChangedListener = listener;
-	}
-    
-    public void update(){
-    	invalidate();
+    public void setText(int index, CharSequence text){
+    	assertIndexValid(index, getCount());
+    	int oldWidth = segmentDrawable.getIntrinsicWidth();
+    	int oldHeight = segmentDrawable.getIntrinsicHeight();
+    	if(!segmentDrawable.setText(index, text)){
+    		return;
+    	}
+    	layersDirty = true;
+    	if(segmentDrawable.getIntrinsicWidth() != oldWidth || segmentDrawable.getIntrinsicHeight() != oldHeight){
+    		geometryDirty = true;
+    		requestLayoutIfSizeChanged();
+    		invalidate();
+    	}else{
+    		invalidateSegments(index, -1, -1);
+    	}
     }
     
-    private float getTextCenterYOffset(Paint.FontMetrics fontMetrics){
-    	if(fontMetrics == null) return 0;
-    	return Math.abs(fontMetrics.top + fontMetrics.bottom)/2;
+    public CharSequence getText(int index){
+    	assertIndexValid(index, getCount());
+    	return segmentDrawable.getText(index);
     }
     
-    private String[] convertCharSequenceToString(CharSequence[] csArray){
-    	if(csArray == null)	return null;
-    	String[] sArray = new String[csArray.length];
-    	for(int i = 0; i < csArray.length; i++){
-    		sArray[i] = csArray[i].toString();
+    /**
+     * insert a segment before index, the selected segment stays selected.
+     * the other segments keep their measured texts, segment weights are dropped
+     * @param index from 0 to getCount()
+     */
+    public void insertSegment(int index, CharSequence text){
+    	if(getCount() < 2){
+    		throw new IllegalArgumentException("SegmentControlView's texts should be set before segments are inserted");
     	}
-    	return sArray;
+    	assertIndexValid(index, getCount() + 1);
+    	cancelSelectionAnimation();
+    	segmentDrawable.insertSegment(index, text);
+    	onSegmentCountChanged(index <= mSelectedIndex ? mSelectedIndex + 1 : mSelectedIndex, false);
     }
-
-    private void assertTextsValid(String[] texts){
-    	if(texts == null || texts.length < 2){
+    
+    /**
+     * remove the segment at index, the selected segment stays selected, if it is the removed one
+     * the segment taking its place is selected and OnSegmentChangedListener is told
+     * @param index from 0 to getCount() - 1, at least two segments remain
+     */
+    public void removeSegment(int index){
+    	if(getCount() <= 2){
     		throw new IllegalArgumentException("SegmentControlView's content text array'length should larger than 1");
     	}
+    	assertIndexValid(index, getCount());
+    	cancelSelectionAnimation();
+    	segmentDrawable.removeSegment(index);
+    	if(index == mSelectedIndex){
+    		onSegmentCountChanged(Math.min(mSelectedIndex, getCount() - 1), true);
+    	}else{
+    		onSegmentCountChanged(index < mSelectedIndex ? mSelectedIndex - 1 : mSelectedIndex, false);
+    	}
     }
     
-    private boolean checkViewPagerOnPageChangeListener(ViewPager viewPager){
-		if(viewPager == null) return false;
-		Field field = null;
-		try {
-			field = ViewPager.class.getDeclaredField("mOnPageChangeListener");
-			if(field == null) return false;
-			field.setAccessible(true);
-			Object o = field.get(viewPager);
-			if(o != null && o instanceof InternalViewPagerListener){
-				return true;
-			}
-		} catch (Exception e) {
-			return false;
-		}
-		return false;
-	}
-    
-    private int getTouchedIndex(float x, float y){
-    	
-    	if(!rectF.contains(x, y)){
-    		return -1;
-    	}
-    	for(int i = 0; i < mTexts.length; i++){
-    		if(rectF.left + i * unitWidth <= x && x < rectF.left + (i + 1) * unitWidth){
-    			return i;
+    private void onSegmentCountChanged(int selectedIndex, boolean selectedSegmentRemoved){
+    	curTouchedIndex = -1;
+    	preTouchedIndex = -1;
+    	if(selectedIndex != mSelectedIndex || selectedSegmentRemoved){
+    		mSelectedIndex = selectedIndex;
+    		if(selectedSegmentRemoved && mOnSegmentChangedListener != null){
+    			mOnSegmentChangedListener.onSegmentChanged(mSelectedIndex);
     		}
+    		postSelectionChange(false);
     	}
-    	return -1;
+    	geometryDirty = true;
+    	requestLayoutIfSizeChanged();
+    	invalidate();
     }
     
-    private boolean checkIfEqual(String[] a, String[] b){
-    	if(a == null && b == null){
-    		return true;
+    private void applyTexts(CharSequence[] texts){
+    	if(segmentDrawable.hasTexts(texts)){
+    		return;
     	}
-    	if(a != null){
-    		if(b == null){
-    			return false;
-    		}
-    		if(a.length != b.length){
-    			return false;
-    		}
-    		for(int i = 0; i < a.length; i++){
-    			if(a[i] == null && b[i] == null){
-    				continue;
-    			}
-    			if(a[i] != null && a[i].equals(b[i])){
-    				continue;
-    			}else{
-    				return false;
-    			}
-    		}
-    		return true;
+    	boolean traced = traceBegin(TRACE_SET_TEXTS);
+    	cancelSelectionAnimation();
+    	segmentDrawable.setTexts(texts);
+    	geometryDirty = true;
+       	requestLayoutIfSizeChanged();
+       	invalidate();
+       	traceEnd(traced);
+    }
+    
+    /**
+     * set how the available width is split among segments
+     * @param segmentWidthMode SEGMENT_WIDTH_MODE_EQUAL or SEGMENT_WIDTH_MODE_CONTENT
+     */
+    public void setSegmentWidthMode(int segmentWidthMode){
+    	if(segmentDrawable.getSegmentWidthMode() != segmentWidthMode){
+    		segmentDrawable.setSegmentWidthMode(segmentWidthMode);
+    		geometryDirty = true;
+    		requestLayoutIfSizeChanged();
+    		invalidate();
     	}
-    	return false;
     }
     
-    private int measureWidth(int measureSpec, Paint paint) {  
-		int result = 0;  
-		int specMode = MeasureSpec.getMode(measureSpec);  
-		int specSize = MeasureSpec.getSize(measureSpec);  
-		   
-		if (specMode == MeasureSpec.EXACTLY) {  
-			result = specSize;
-		} else {  
-			int maxWidth = 0;
-			int maxWidthItem = getMaxWidthOfTextArray(mTexts, paint);
-			maxWidth = (maxWidthItem + 2 * mSegmentPaddingHorizontal + 2 * mFrameWidth) * mTexts.length;
-			
-			if(maxWidth < 2 * mFrameCornerRadius){
-				maxWidth = 2 * mFrameCornerRadius;
-			}
-			
-			result = this.getPaddingLeft() + this.getPaddingRight() + maxWidth;//MeasureSpec.UNSPECIFIED
-			if (specMode == MeasureSpec.AT_MOST) {
-				result = Math.min(result, specSize);  
-			}
-		}
-		return result;  
-	}  
+    public int getSegmentWidthMode(){
+    	return segmentDrawable.getSegmentWidthMode();
+    }
     
-    private int measureHeight(int measureSpec, Paint paint) {  
-		int result = 0;  
-		int specMode = MeasureSpec.getMode(measureSpec);  
-		int specSize = MeasureSpec.getSize(measureSpec);  
-		
-		if (specMode == MeasureSpec.EXACTLY) {  
-			result = specSize;  
-		} else {  
-			int maxHeight = 0;
-			int maxHeightItem = getMaxHeightOfTextArray(mTexts, paint);
-			
-			maxHeight = maxHeightItem + 2 * mSegmentPaddingVertical + 2 * mFrameWidth;
-			
-			if(maxHeight < 2 * mFrameCornerRadius){
-				maxHeight = 2 * mFrameCornerRadius;
-			}
-			
-			result = this.getPaddingTop() + this.getPaddingBottom() + maxHeight;//MeasureSpec.UNSPECIFIED
-			if (specMode == MeasureSpec.AT_MOST) {  
-				result = Math.min(result, specSize);  
-			}  
-		}  
-		return result;
-	}
+    /**
+     * set the relative width of every segment, which overrides the segment width mode.
+     * the weights are dropped if texts of another count are set later
+     * @param weights one positive weight per segment, null to use the segment width mode again
+     */
+    public void setSegmentWeights(float[] weights){
+    	segmentDrawable.setSegmentWeights(weights);
+    	geometryDirty = true;
+    	requestLayoutIfSizeChanged();
+    	invalidate();
+    }
     
-    private int getMaxWidthOfTextArray(String[] array, Paint paint){
-    	if(array == null){
-    		return 0;
-    	}
-    	int maxWidth = 0;
-    	for(String item : array){
-    		if(item != null){
-    			int itemWidth = getTextWidth(item, paint);
-    			maxWidth = Math.max(itemWidth, maxWidth);
+    /**
+     * set if segments keep their wrap_content width and the strip scrolls horizontally
+     * when they do not fit, instead of being squeezed into the view's width
+     * @param scrollable set if you want a scrollable strip
+     */
+    public void setScrollable(boolean scrollable){
+    	if(mIsScrollable != scrollable){
+    		mIsScrollable = scrollable;
+    		if(!scrollable){
+    			stopScroll();
+    			scrollTo(0, 0);
     		}
+    		geometryDirty = true;
+    		requestLayout();
+    		invalidate();
     	}
-    	return maxWidth;
     }
     
-    private int getMaxHeightOfTextArray(String[] array, Paint paint){
-    	if(array == null){
-    		return 0;
-    	}
-    	int maxHeight = 0;
-    	for(String item : array){
-    		if(item != null){
-    			int itemHeight = getTextHeight(item, paint);
-    			maxHeight = Math.max(itemHeight, maxHeight);
-    		}
-    	}
-    	return maxHeight;
+    public boolean getScrollable(){
+    	return mIsScrollable;
     }
     
-    private void drawBackgroundAndFrameAndText(Canvas canvas){
-    	int curBackgroundColor = 0;
-    	int curTextColor = 0;
-    	for(int i = 0; i < mTexts.length; i++){
-    		float left = rectF.left + unitWidth * i;
-    		pathFrame.reset();
-    		if(i == 0){
-    			pathFrame.moveTo(rectF.left, rectF.top + mFrameCornerRadius);
-    			rectFArc.offsetTo(rectF.left, rectF.top);
-    			pathFrame.arcTo(rectFArc, 180, 90);
-    			pathFrame.lineTo(rectF.left + unitWidth, rectF.top);
-    			pathFrame.lineTo(rectF.left + unitWidth, rectF.bottom);
-    			pathFrame.lineTo(rectF.left + mFrameCornerRadius, rectF.bottom);
-    			rectFArc.offsetTo(rectF.left, rectF.bottom - 2 * mFrameCornerRadius);
-    			pathFrame.arcTo(rectFArc, 90, 90);
-    		}else if(i == (mTexts.length - 1)){
-    			pathFrame.moveTo(rectF.left + i * unitWidth, rectF.top);
-    			pathFrame.lineTo(rectF.right - mFrameCornerRadius, rectF.top);
-    			rectFArc.offsetTo(rectF.right - 2 * mFrameCornerRadius, rectF.top);
-    			pathFrame.arcTo(rectFArc, 270, 90);
-    			pathFrame.lineTo(rectF.right, rectF.bottom - mFrameCornerRadius);
-    			rectFArc.offsetTo(rectF.right - 2 * mFrameCornerRadius, rectF.bottom - 2 * mFrameCornerRadius);
-    			pathFrame.arcTo(rectFArc, 0, 90);
-    			pathFrame.lineTo(rectF.left + i * unitWidth, rectF.bottom);
-    		}else{
-    			pathFrame.moveTo(left, rectF.top);
-    			pathFrame.lineTo(left + unitWidth, rectF.top);
-    			pathFrame.lineTo(left + unitWidth, rectF.bottom);
-    			pathFrame.lineTo(left, rectF.bottom);
-    		}
-    		pathFrame.close();
-    		
-    		if(!mIsGradient){
-	    		if(i == mSelectedIndex){
-					curBackgroundColor = mColorBackgroundSelected;
-					curTextColor = mColorTextSelected;
-				}else{
-					curBackgroundColor = mColorBackgroundNormal;
-					curTextColor = mColorTextNormal;
-				}
-			}
-			if(mIsGradient){
-				if(viewPagerPositionOffset != 0f){
-					if(i == viewPagerPosition){
-						curBackgroundColor = getEvaluateColor(viewPagerPositionOffset, mColorBackgroundSelected, mColorBackgroundNormal);
-						curTextColor = getEvaluateColor(viewPagerPositionOffset, mColorTextSelected, mColorTextNormal);
-					}else if(i == viewPagerPosition + 1){
-						curBackgroundColor = getEvaluateColor(viewPagerPositionOffset, mColorBackgroundNormal, mColorBackgroundSelected);
-						curTextColor = getEvaluateColor(viewPagerPositionOffset, mColorTextNormal, mColorTextSelected);
-					}else{
-						curBackgroundColor = mColorBackgroundNormal;
-						curTextColor = mColorTextNormal;
-					}
-				}else{
-					if(i == mSelectedIndex){
-						curBackgroundColor = mColorBackgroundSelected;
-						curTextColor = mColorTextSelected;
-					}else{
-						curBackgroundColor = mColorBackgroundNormal;
-						curTextColor = mColorTextNormal;
-					}
-				}
-			}
-			paintBackground.setColor(curBackgroundColor);
-			
-			if(curTouchedIndex == i){
-				paintBackground.setColor(getDarkColor(curBackgroundColor, TOUCHED_BACKGROUND_DARK_COEFFICIENT));
+    /**
+     * scrolls the strip so that the segment is centered as far as possible,
+     * does nothing if the view is not scrollable
+     * @param index index of the segment
+     */
+    public void scrollToSegment(int index){
+    	scrollToSegment(index, true);
+    }
+    
+    public void scrollToSegment(int index, boolean smooth){
+    	if(!mIsScrollable || index < 0 || index >= getCount()){
+    		return;
+    	}
+    	ensureGeometry();
+    	if(scrollRange == 0){
+    		return;
+    	}
+    	int target = getCenteredScrollX(index);
+    	int scrollX = getScrollX();
+    	if(target == scrollX){
+    		return;
+    	}
+    	if(smooth){
+    		ensureScroller();
+    		scroller.abortAnimation();
+    		scroller.startScroll(scrollX, 0, target - scrollX, 0, SCROLL_TO_SEGMENT_DURATION_MS);
+    		ViewCompat.postInvalidateOnAnimation(this);
+    	}else{
+    		stopScroll();
+    		scrollTo(target, 0);
+    	}
+    }
+    
+    public int getCount(){
+    	return segmentDrawable.getCount();
+    }
+    
+    /**
+     * setViewPager(viewpager) to response to the change of ViewPager,
+     * the listener is added next to the ViewPager's other listeners while this view
+     * is attached to window, a detached view binds once it is attached
+     * @param viewPager the viewPager you want segmentcontrolview to respond with
+     */
+    public void setViewPager(ViewPager viewPager) {
+    	if(this.viewPager == viewPager){
+    		return;
+    	}
+    	unbindViewPager();
+        this.viewPager = viewPager;
+        if(getWindowToken() != null){
+        	bindViewPager();
+        }
+    }
+    
+    @Override
+    protected void onAttachedToWindow() {
+    	super.onAttachedToWindow();
+    	if(viewPager != null && !viewPagerBound){
+    		bindViewPager();
+    		//the pager may have moved on while we were detached
+    		syncSelectedIndex(viewPager.getCurrentItem());
+    		invalidate();
+    	}
+    	if(selectionChangePending || selectionSettlePending){
+    		postSelectionDispatch();
+    	}
+    }
+    
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+    	super.onConfigurationChanged(newConfig);
+    	//font scale or locale may have changed, forget everything measured so far
+    	segmentDrawable.invalidateTextMetrics();
+    	geometryDirty = true;
+    	requestLayout();
+    }
+    
+    @Override
+    protected void onDetachedFromWindow() {
+    	//keep the reference so that a re-attached view binds again, but stop listening
+    	unbindViewPager();
+    	stopScroll();
+    	cancelSelectionAnimation();
+    	releaseLayers();
+    	if(selectionDispatchPosted){
+    		//picked up again in onAttachedToWindow()
+    		removeCallbacks(selectionDispatch);
+    		selectionDispatchPosted = false;
+    	}
+    	super.onDetachedFromWindow();
+    }
+    
+    /**
+     * set if this view has the Gradient effect when segment changed
+     * @param gradient set if you want gradient effect
+     */
+    public void setGradient(boolean gradient){
+    	if(mIsGradient != gradient){
+    		mIsGradient = gradient;
+    	}
+    }
+    
+    public boolean getGradient(){
+    	return mIsGradient;
+    }
+    
+    /**
+     * set how long the selection takes to slide to a newly selected segment,
+     * 0 makes the selection snap as before.
+     * the animation is not used while a ViewPager drives the gradient effect.
+     * @param durationMillis duration in milliseconds, 0 or more
+     */
+    public void setSelectionAnimationDuration(int durationMillis){
+    	if(durationMillis < 0){
+    		throw new IllegalArgumentException("SegmentControlView's selection animation duration should not be negative");
+    	}
+    	mSelectionAnimationDuration = durationMillis;
+    	if(durationMillis == 0){
+    		cancelSelectionAnimation();
+    	}
+    }
+    
+    public int getSelectionAnimationDuration(){
+    	return mSelectionAnimationDuration;
+    }
+    
+    /**
+     * @param interpolator interpolator of the selection animation, null for decelerate
+     */
+    public void setSelectionInterpolator(Interpolator interpolator){
+    	mSelectionInterpolator = interpolator;
+    }
+    
+    public Interpolator getSelectionInterpolator(){
+    	return mSelectionInterpolator;
+    }
+    
+    /**
+     * set how segments are rendered
+     * @param renderMode RENDER_MODE_DEFAULT, RENDER_MODE_LAYERS or RENDER_MODE_SINGLE_PASS
+     */
+    public void setRenderMode(int renderMode){
+    	if(mRenderMode != renderMode){
+    		mRenderMode = renderMode;
+    		segmentDrawable.setSinglePass(renderMode == RENDER_MODE_SINGLE_PASS);
+    		if(renderMode != RENDER_MODE_LAYERS){
+    			releaseLayers();
+    		}
+    		layersDirty = true;
+    		invalidate();
+    	}
+    }
+    
+    public int getRenderMode(){
+    	return mRenderMode;
+    }
+    
+    /**
+     * set if the rounded corners are made by clipping this view to the frame's outline
+     * on the render thread, segments are then filled as plain rectangles.
+     * only used on Android 5.0 and above and while the strip does not scroll,
+     * otherwise corners are drawn as paths as before. a background of this view
+     * is clipped as well.
+     * @param outlineClip set if you want corners clipped by the outline
+     */
+    public void setOutlineClip(boolean outlineClip){
+    	if(mOutlineClip != outlineClip){
+    		mOutlineClip = outlineClip;
+    		if(!geometryDirty){
+    			updateOutlineClip();
+    		}
+    		invalidate();
+    	}
+    }
+    
+    public boolean getOutlineClip(){
+    	return mOutlineClip;
+    }
+    
+    /**
+     * set how much darker the background of the touched segment is
+     * @param darkCoefficient in (0, 1], 1 means no pressed effect, default is 0.95
+     */
+    public void setTouchedDarkCoefficient(float darkCoefficient){
+    	if(segmentDrawable.getTouchedDarkCoefficient() != darkCoefficient){
+    		segmentDrawable.setTouchedDarkCoefficient(darkCoefficient);
+    		if(curTouchedIndex != -1){
+    			invalidateSegments(curTouchedIndex, -1, -1);
+    		}
+    	}
+    }
+    
+    public float getTouchedDarkCoefficient(){
+    	return segmentDrawable.getTouchedDarkCoefficient();
+    }
+    
+    /**
+     * set if gradient colors are interpolated in linear light instead of in sRGB,
+     * which avoids the dark middle of sRGB blends, it costs nothing per frame
+     * @param gammaCorrect set if you want gamma-correct gradient
+     */
+    public void setGammaCorrectGradient(boolean gammaCorrect){
+    	if(segmentDrawable.getGammaCorrectGradient() != gammaCorrect){
+    		segmentDrawable.setGammaCorrectGradient(gammaCorrect);
+    		invalidate();
+    	}
+    }
+    
+    public boolean getGammaCorrectGradient(){
+    	return segmentDrawable.getGammaCorrectGradient();
+    }
+    
+    /**
+     * when segment changed, 
+     * mOnSegmentChangedListener.onSegmentChanged(newSelectedIndex) will be triggered
+     * @param listener OnSegmentChangedListener
+     */
+    public void setOnSegmentChangedListener(OnSegmentChangedListener listener){
+		mOnSegmentChangedListener = listener;
+	}
+    
+    /**
+     * set a listener to be told of selection changes coalesced per frame and of the selection
+     * settling, see OnSelectionChangeListener. the current index counts as already reported.
+     * @param listener OnSelectionChangeListener, null to remove
+     */
+    public void setOnSelectionChangeListener(OnSelectionChangeListener listener){
+    	mOnSelectionChangeListener = listener;
+    	reportedChangedIndex = mSelectedIndex;
+    	reportedSettledIndex = mSelectedIndex;
+    	selectionChangePending = false;
+    	selectionSettlePending = false;
+    	if(selectionDispatchPosted){
+    		removeCallbacks(selectionDispatch);
+    		selectionDispatchPosted = false;
+    	}
+    }
+    
+    /**
+     * set a listener to receive counts and durations of this view's draw, measure,
+     * touch and ViewPager work, null to disable, which is the default and costs nothing
+     * @param listener MetricsListener, e.g. SegmentControlMetrics
+     */
+    public void setMetricsListener(MetricsListener listener){
+    	mMetricsListener = listener;
+    }
+    
+    public MetricsListener getMetricsListener(){
+    	return mMetricsListener;
+    }
+    
+    public void update(){
+    	invalidate();
+    }
+    
+    /**
+     * starts a batch of changes, nothing is applied until Editor.apply() is called.
+     * however many values are changed, apply() requests at most one layout and one redraw:
+     * 	segmentControlView.edit()
+     * 		.setTextColor(normal, selected)
+     * 		.setBackgroundColor(normal, selected)
+     * 		.setTextSize(size)
+     * 		.apply();
+     * the returned Editor is owned by this view and reused by the next edit().
+     */
+    public Editor edit(){
+    	if(editor == null){
+    		editor = new Editor();
+    	}
+    	editor.clear();
+    	return editor;
+    }
+    
+    private void beginBatch(){
+    	batchDepth++;
+    }
+    
+    private void endBatch(){
+    	if(--batchDepth > 0){
+    		return;
+    	}
+    	if(batchLayoutRequested){
+    		batchLayoutRequested = false;
+    		requestLayoutIfSizeChanged();
+    	}
+    	if(batchInvalidateRequested){
+    		batchInvalidateRequested = false;
+    		invalidate();
+    	}
+    }
+    
+    /**
+     * collects changes of a SegmentControlView and applies them at once, see edit()
+     */
+    public final class Editor {
+    	
+    	private static final int CHANGED_TEXT_COLOR = 1;
+    	private static final int CHANGED_BACKGROUND_COLOR = 1 << 1;
+    	private static final int CHANGED_FRAME_COLOR = 1 << 2;
+    	private static final int CHANGED_FRAME_WIDTH = 1 << 3;
+    	private static final int CHANGED_TEXT_SIZE = 1 << 4;
+    	private static final int CHANGED_TYPEFACE = 1 << 5;
+    	private static final int CHANGED_TEXTS = 1 << 6;
+    	private static final int CHANGED_SELECTED_INDEX = 1 << 7;
+    	
+    	private int changed;
+    	private int textColorNormal;
+    	private int textColorSelected;
+    	private int backgroundColorNormal;
+    	private int backgroundColorSelected;
+    	private int frameColor;
+    	private int frameWidth;
+    	private int textSize;
+    	private Typeface typeface;
+    	private CharSequence[] texts;
+    	private int selectedIndex;
+    	
+    	private Editor(){
+    	}
+    	
+    	private void clear(){
+    		changed = 0;
+    		typeface = null;
+    		texts = null;
+    	}
+    	
+    	public Editor setTextColor(int textColorNormal, int textColorSelected){
+    		this.textColorNormal = textColorNormal;
+    		this.textColorSelected = textColorSelected;
+    		changed |= CHANGED_TEXT_COLOR;
+    		return this;
+    	}
+    	
+    	public Editor setBackgroundColor(int backgroundColorNormal, int backgroundColorSelected){
+    		this.backgroundColorNormal = backgroundColorNormal;
+    		this.backgroundColorSelected = backgroundColorSelected;
+    		changed |= CHANGED_BACKGROUND_COLOR;
+    		return this;
+    	}
+    	
+    	public Editor setFrameColor(int frameColor){
+    		this.frameColor = frameColor;
+    		changed |= CHANGED_FRAME_COLOR;
+    		return this;
+    	}
+    	
+    	public Editor setFrameWidth(int frameWidth){
+    		this.frameWidth = frameWidth;
+    		changed |= CHANGED_FRAME_WIDTH;
+    		return this;
+    	}
+    	
+    	public Editor setTextSize(int textSize){
+    		this.textSize = textSize;
+    		changed |= CHANGED_TEXT_SIZE;
+    		return this;
+    	}
+    	
+    	public Editor setTypeface(Typeface typeface){
+    		this.typeface = typeface;
+    		changed |= CHANGED_TYPEFACE;
+    		return this;
+    	}
+    	
+    	public Editor setTexts(CharSequence[] texts){
+    		this.texts = texts;
+    		changed |= CHANGED_TEXTS;
+    		return this;
+    	}
+    	
+    	public Editor setSelectedIndex(int selectedIndex){
+    		this.selectedIndex = selectedIndex;
+    		changed |= CHANGED_SELECTED_INDEX;
+    		return this;
+    	}
+    	
+    	/**
+    	 * applies every change made since edit(), values equal to the current ones cost nothing
+    	 */
+    	public void apply(){
+    		int changed = this.changed;
+    		CharSequence[] texts = this.texts;
+    		Typeface typeface = this.typeface;
+    		clear();
+    		beginBatch();
+    		try{
+    			if((changed & CHANGED_TEXTS) != 0){
+    				SegmentControlView.this.setTexts(texts);
+    			}
+    			if((changed & CHANGED_TEXT_SIZE) != 0){
+    				SegmentControlView.this.setTextSize(textSize);
+    			}
+    			if((changed & CHANGED_TYPEFACE) != 0){
+    				SegmentControlView.this.setTypeface(typeface);
+    			}
+    			if((changed & CHANGED_FRAME_WIDTH) != 0){
+    				SegmentControlView.this.setFrameWidth(frameWidth);
+    			}
+    			if((changed & CHANGED_TEXT_COLOR) != 0){
+    				SegmentControlView.this.setTextColor(textColorNormal, textColorSelected);
+    			}
+    			if((changed & CHANGED_BACKGROUND_COLOR) != 0){
+    				SegmentControlView.this.setBackgroundColor(backgroundColorNormal, backgroundColorSelected);
+    			}
+    			if((changed & CHANGED_FRAME_COLOR) != 0){
+    				SegmentControlView.this.setFrameColor(frameColor);
+    			}
+    			if((changed & CHANGED_SELECTED_INDEX) != 0){
+    				SegmentControlView.this.setSelectedIndex(selectedIndex);
+    			}
+    		}finally{
+    			endBatch();
+    		}
+    	}
+    }
+    
+    private long metricsStart(){
+    	return mMetricsListener != null ? System.nanoTime() : 0L;
+    }
+    
+    /**
+     * @param start value of metricsStart(), or 0 for events without duration
+     */
+    private void metricsEnd(int event, long start){
+    	MetricsListener listener = mMetricsListener;
+    	if(listener != null){
+    		listener.onMetric(this, event, start == 0L ? 0L : System.nanoTime() - start);
+    	}
+    }
+    
+    /**
+     * set if every SegmentControlView marks its work as trace sections for systrace and Perfetto,
+     * off by default, which costs one static check per section.
+     * sections are named e.g. "SegmentControlView.onDraw n=5 mode=0", n is the count of
+     * segments and mode the render mode, the others are onMeasure, onSizeChanged,
+     * onTouchEvent, onPageScrolled, viewPagerFrame and setTexts.
+     * sections are only recorded on Android 4.3 and above.
+     * @param enabled set if you want trace sections
+     */
+    public static void setTraceEnabled(boolean enabled){
+    	sTraceEnabled = enabled;
+    }
+    
+    public static boolean isTraceEnabled(){
+    	return sTraceEnabled;
+    }
+    
+    /**
+     * @return true if a section was begun, pass it to traceEnd()
+     */
+    private boolean traceBegin(int section){
+    	if(!sTraceEnabled){
+    		return false;
+    	}
+    	TraceCompat.beginSection(getTraceName(section));
+    	return true;
+    }
+    
+    private static void traceEnd(boolean traced){
+    	if(traced){
+    		TraceCompat.endSection();
+    	}
+    }
+    
+    /**
+     * names are built once per count of segments and render mode, not per section
+     */
+    private String getTraceName(int section){
+    	int count = getCount();
+    	if(traceNames == null || traceNamesCount != count || traceNamesRenderMode != mRenderMode){
+    		traceNames = new String[TRACE_SECTION_NAMES.length];
+    		traceNamesCount = count;
+    		traceNamesRenderMode = mRenderMode;
+    	}
+    	String name = traceNames[section];
+    	if(name == null){
+    		name = TRACE_SECTION_NAMES[section] + " n=" + count + " mode=" + mRenderMode;
+    		traceNames[section] = name;
+    	}
+    	return name;
+    }
+    
+    private void assertIndexValid(int index, int count){
+    	if(index < 0 || index >= count){
+    		throw new IllegalArgumentException("SegmentControlView's index " + index + " is out of range [0, " + count + ")");
+    	}
+    }
+    
+    private void assertTextsValid(CharSequence[] texts){
+    	if(texts == null || texts.length < 2){
+    		throw new IllegalArgumentException("SegmentControlView's content text array'length should larger than 1");
+    	}
+    }
+    
+    /**
+     * takes the ViewPager's page as the selection without an animation and without telling the listeners,
+     * the page was reported by the ViewPager while this view was not listening
+     */
+    private void syncSelectedIndex(int index){
+    	if(mSelectedIndex == index || index < 0 || index >= getCount()){
+    		return;
+    	}
+    	mSelectedIndex = index;
+    	scrollToSegment(index, false);
+    }
+    
+    private void bindViewPager(){
+    	if(viewPager == null || viewPagerBound){
+    		return;
+    	}
+    	if(viewPagerListener == null){
+    		viewPagerListener = new InternalViewPagerListener();
+    	}
+    	viewPager.addOnPageChangeListener(viewPagerListener);
+    	viewPagerBound = true;
+    }
+    
+    private void unbindViewPager(){
+    	if(viewPager == null || !viewPagerBound){
+    		return;
+    	}
+    	viewPager.removeOnPageChangeListener(viewPagerListener);
+    	viewPagerBound = false;
+    	if(viewPagerFramePosted){
+    		removeCallbacks(viewPagerFrame);
+    		viewPagerFramePosted = false;
+    	}
+    	stopDeferringViewPagerScroll();
+    	viewPagerPosition = -1;
+    	viewPagerPositionOffset = 0f;
+    	pendingPagerPosition = -1;
+    	pendingPagerOffset = 0f;
+    	drawnPagerPosition = -1;
+    	drawnPagerStep = 0;
+    	viewPagerScrollState = ViewPager.SCROLL_STATE_IDLE;
+    	viewPagerDragged = false;
+    }
+    
+    /**
+     * @param x in view coordinates, the horizontal scroll is added here
+     */
+    private int getTouchedIndex(float x, float y){
+    	ensureGeometry();
+    	return segmentDrawable.getSegmentIndexAt(x + getScrollX(), y);
+    }
+    
+    private int measureWidth(int measureSpec) {  
+		int result = 0;  
+		int specMode = MeasureSpec.getMode(measureSpec);  
+		int specSize = MeasureSpec.getSize(measureSpec);  
+		   
+		if (specMode == MeasureSpec.EXACTLY) {  
+			result = specSize;
+		} else {  
+			int maxWidth = segmentDrawable.getIntrinsicWidth();
+			result = this.getPaddingLeft() + this.getPaddingRight() + maxWidth;//MeasureSpec.UNSPECIFIED
+			if (specMode == MeasureSpec.AT_MOST) {
+				result = Math.min(result, specSize);  
 			}
-			canvas.drawPath(pathFrame, paintBackground);
-			canvas.drawPath(pathFrame, paintFrame);
-    		
-    		paintText.setColor(curTextColor);
-    		canvas.drawText(mTexts[i], left + unitWidth / 2,rectF.centerY() + textCenterYOffset, paintText);
+		}
+		return result;  
+	}  
+    
+    private int measureHeight(int measureSpec) {  
+		int result = 0;  
+		int specMode = MeasureSpec.getMode(measureSpec);  
+		int specSize = MeasureSpec.getSize(measureSpec);  
+		
+		if (specMode == MeasureSpec.EXACTLY) {  
+			result = specSize;  
+		} else {  
+			int maxHeight = segmentDrawable.getIntrinsicHeight();
+			result = this.getPaddingTop() + this.getPaddingBottom() + maxHeight;//MeasureSpec.UNSPECIFIED
+			if (specMode == MeasureSpec.AT_MOST) {  
+				result = Math.min(result, specSize);  
+			}  
+		}  
+		return result;
+	}
+    
+    /**
+     * called when the content changed in a way that may change the wanted size.
+     * measures again with the last measure specs, if the outcome is the size this view
+     * already has, the parent need not lay out again and only the geometry is rebuilt.
+     * the caller is expected to invalidate.
+     */
+    private void requestLayoutIfSizeChanged(){
+    	if(batchDepth > 0 || !hasMeasured || getCount() == 0 || isLayoutRequested()){
+    		requestLayout();
+    		return;
     	}
+    	int width = measureWidth(lastWidthMeasureSpec);
+    	int height = measureHeight(lastHeightMeasureSpec);
+    	if(width != getMeasuredWidth() || height != getMeasuredHeight()){
+    		requestLayout();
+    		return;
+    	}
+    	geometryDirty = true;
     }
     
+    /**
+     * sets the drawable's bounds again if the padding changed or if they were marked dirty
+     * by a change of texts' count or frame width since the last time
+     */
+    private void ensureGeometry(){
+    	if(geometryDirty
+    			|| geometryPaddingLeft != getPaddingLeft()
+    			|| geometryPaddingTop != getPaddingTop()
+    			|| geometryPaddingRight != getPaddingRight()
+    			|| geometryPaddingBottom != getPaddingBottom()){
+    		updateGeometry(getWidth(), getHeight());
+    	}
+    }
+    
+    private void updateGeometry(int w, int h){
+    	geometryPaddingLeft = getPaddingLeft();
+    	geometryPaddingTop = getPaddingTop();
+    	geometryPaddingRight = getPaddingRight();
+    	geometryPaddingBottom = getPaddingBottom();
+    	geometryDirty = false;
+    	layersDirty = true;
+    	
+    	int right = w - geometryPaddingRight;
+		scrollRange = 0;
+		if(mIsScrollable && getCount() > 0){
+			//segments keep the width they need, the strip gets longer than the view
+			right = Math.max(right, geometryPaddingLeft + segmentDrawable.getIntrinsicWidth());
+			scrollRange = Math.max(0, right + geometryPaddingRight - w);
+			if(getScrollX() > scrollRange){
+				scrollTo(scrollRange, 0);
+			}
+		}
+		segmentDrawable.setBounds(geometryPaddingLeft, geometryPaddingTop, right, h - geometryPaddingBottom);
+		updateOutlineClip();
+    }
+    
+    /**
+     * clips to the drawable's outline if wanted and possible, called whenever the bounds,
+     * the corner radius or the scroll range may have changed
+     */
+    private void updateOutlineClip(){
+    	if(Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP){
+    		return;
+    	}
+    	boolean clip = mOutlineClip && scrollRange == 0;
+    	if(clip != outlineClipApplied){
+    		outlineClipApplied = clip;
+    		segmentDrawable.setCornersClipped(clip);
+    		OutlineClip.setClipToOutline(this, clip);
+    	}else if(clip){
+    		OutlineClip.invalidateOutline(this);
+    	}
+    }
+    
+    /**
+     * the API 21 calls of the outline clip, kept apart so that older platforms never load them
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static class OutlineClip extends ViewOutlineProvider {
+    	
+    	private static final OutlineClip INSTANCE = new OutlineClip();
+    	
+    	@Override
+    	public void getOutline(View view, Outline outline) {
+    		((SegmentControlView)view).segmentDrawable.getOutline(outline);
+    	}
+    	
+    	static void setClipToOutline(SegmentControlView view, boolean clip){
+    		view.setOutlineProvider(clip ? INSTANCE : ViewOutlineProvider.BACKGROUND);
+    		view.setClipToOutline(clip);
+    	}
+    	
+    	static void invalidateOutline(SegmentControlView view){
+    		view.invalidateOutline();
+    	}
+    }
+    
+    private void drawBackgroundAndFrameAndText(Canvas canvas){
+    	updateDrawableState();
+    	if(mRenderMode == RENDER_MODE_LAYERS && ensureLayers()){
+    		drawLayers(canvas);
+    		return;
+    	}
+    	segmentDrawable.draw(canvas);
+    }
+    
+    /**
+     * hands the selection and the pressed segment of this frame to the drawable:
+     * the sliding selection while animating, the ViewPager's offset in gradient mode,
+     * otherwise the selected index
+     */
+    private void updateDrawableState(){
+    	if(selectionAnimating){
+    		int floor = (int)selectionPosition;
+    		segmentDrawable.setSelection(floor, selectionPosition - floor);
+    	}else if(mIsGradient && viewPagerPositionOffset != 0f){
+    		segmentDrawable.setSelection(viewPagerPosition, viewPagerPositionOffset);
+    	}else{
+    		segmentDrawable.setSelectedIndex(mSelectedIndex);
+    	}
+    	segmentDrawable.setPressedIndex(curTouchedIndex);
+    }
+    
+    private void addDirtySegment(int i){
+    	if(geometryDirty || i < 0 || i >= getCount()){
+    		return;
+    	}
+    	segmentDrawable.getSegmentBounds(i, segmentBounds);
+    	dirtyRect.union(segmentBounds);
+    }
+    
+    private void invalidateDirtyRect(){
+    	if(geometryDirty || batchDepth > 0){
+    		//bounds were computed from stale geometry
+    		invalidate();
+    	}else if(!dirtyRect.isEmpty()){
+    		invalidate(dirtyRect.left, dirtyRect.top, dirtyRect.right, dirtyRect.bottom);
+    		metricsEnd(MetricsListener.EVENT_INVALIDATE, 0);
+    	}
+    }
+    
+    /**
+     * invalidates the union of the given segments' bounds, pass -1 for unused arguments
+     */
+    private void invalidateSegments(int first, int second, int third){
+    	dirtyRect.setEmpty();
+    	addDirtySegment(first);
+    	addDirtySegment(second);
+    	addDirtySegment(third);
+    	invalidateDirtyRect();
+    }
+    
+    /**
+     * composites the pre-rendered layers: the normal layer once for the whole view,
+     * then the selected layer clipped to every segment that is (partly) selected,
+     * with the alpha of its selected fraction.
+     */
+    private void drawLayers(Canvas canvas){
+    	canvas.drawBitmap(layerNormal, 0, 0, null);
+    	int count = getCount();
+    	for(int i = 0; i < count; i++){
+    		float fraction = segmentDrawable.getSelectedFraction(i);
+    		if(fraction <= 0f){
+    			continue;
+    		}
+    		float left = i == 0 ? 0 : segmentDrawable.getSegmentLeft(i);
+    		float right = i == count - 1 ? getWidth() : segmentDrawable.getSegmentRight(i);
+    		paintLayer.setAlpha((int)(fraction * 255 + 0.5f));
+    		int saveCount = canvas.save();
+    		canvas.clipRect(left, 0, right, getHeight());
+    		canvas.drawBitmap(layerSelected, 0, 0, paintLayer);
+    		canvas.restoreToCount(saveCount);
+    	}
+    	if(curTouchedIndex >= 0 && curTouchedIndex < count){
+    		//the pressed segment is not part of the layers, draw it on top
+    		segmentDrawable.drawPressedSegment(canvas, curTouchedIndex);
+    	}
+    }
+    
+    /**
+     * makes sure both layers exist, have the size of this view and are up to date
+     * @return false if the layers can not be used, then segments are drawn directly
+     */
+    private boolean ensureLayers(){
+    	int w = getWidth();
+    	int h = getHeight();
+    	if(w <= 0 || h <= 0 || scrollRange > 0){
+    		//layers hold one view-sized snapshot, a scrolling strip draws directly
+    		return false;
+    	}
+    	if(layerNormal == null || layerNormal.getWidth() != w || layerNormal.getHeight() != h){
+    		releaseLayers();
+    		try{
+    			layerNormal = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+    			layerSelected = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+    		}catch(OutOfMemoryError e){
+    			releaseLayers();
+    			return false;
+    		}
+    		layersDirty = true;
+    	}
+    	if(layersDirty){
+    		if(paintLayer == null){
+    			paintLayer = new Paint();
+    			paintLayer.setFilterBitmap(false);
+    		}
+    		renderLayer(layerNormal, 0);
+    		renderLayer(layerSelected, SegmentColors.COLOR_RAMP_STEPS);
+    		layersDirty = false;
+    	}
+    	return true;
+    }
+    
+    private void renderLayer(Bitmap layer, int colorStep){
+    	layer.eraseColor(0);
+    	if(layerCanvas == null){
+    		layerCanvas = new Canvas();
+    	}
+    	layerCanvas.setBitmap(layer);
+    	segmentDrawable.drawAllSegments(layerCanvas, colorStep);
+    }
+    
+    /**
+     * drops the layers and leaves them to the garbage collector: they are not recycled, as a display list
+     * recorded from them may still be drawn after the view is detached or resized
+     */
+    private void releaseLayers(){
+    	layerNormal = null;
+    	layerSelected = null;
+    	//the canvas holds the last layer rendered into it
+    	layerCanvas = null;
+    }
+    
+    
+    //state of the selection animation, one frame callback is reused for every animation
+    private boolean selectionAnimating = false;
+    private boolean selectionFramePosted = false;
+    private float selectionPosition;		//current position of the selection, may be between two segments
+    private float selectionStartPosition;
+    private int selectionTargetIndex;
+    private long selectionStartTime;
+    private final Runnable selectionFrame = new Runnable() {
+		@Override
+		public void run() {
+			selectionFramePosted = false;
+			stepSelectionAnimation();
+		}
+	};
+    
+    /**
+     * starts sliding the selection from oldIndex to newIndex, a running animation
+     * is retargeted from where it currently is
+     * @return false if the selection should snap instead
+     */
+    private boolean startSelectionAnimation(int oldIndex, int newIndex){
+    	if(mSelectionAnimationDuration <= 0 || oldIndex < 0 || newIndex < 0
+    			|| oldIndex >= getCount() || newIndex >= getCount()
+    			|| getWindowToken() == null){
+    		cancelSelectionAnimation();
+    		return false;
+    	}
+    	selectionStartPosition = selectionAnimating ? selectionPosition : oldIndex;
+    	selectionPosition = selectionStartPosition;
+    	selectionTargetIndex = newIndex;
+    	selectionStartTime = AnimationUtils.currentAnimationTimeMillis();
+    	selectionAnimating = true;
+    	if(!selectionFramePosted){
+    		selectionFramePosted = true;
+    		ViewCompat.postOnAnimation(this, selectionFrame);
+    	}
+    	return true;
+    }
+    
+    private void stepSelectionAnimation(){
+    	if(!selectionAnimating){
+    		return;
+    	}
+    	float t = (float)(AnimationUtils.currentAnimationTimeMillis() - selectionStartTime) / mSelectionAnimationDuration;
+    	if(t > 1f){
+    		t = 1f;
+    	}
+    	float interpolated;
+    	if(mSelectionInterpolator != null){
+    		interpolated = mSelectionInterpolator.getInterpolation(t);
+    	}else{
+    		interpolated = 1f - (1f - t) * (1f - t);
+    	}
+    	//segments drawn at the old position and at the new one
+    	dirtyRect.setEmpty();
+    	addDirtySelectionPosition(selectionPosition);
+    	selectionPosition = selectionStartPosition + (selectionTargetIndex - selectionStartPosition) * interpolated;
+    	if(t >= 1f){
+    		selectionAnimating = false;
+    		selectionPosition = selectionTargetIndex;
+    	}
+    	addDirtySelectionPosition(selectionPosition);
+    	invalidateDirtyRect();
+    	if(selectionAnimating){
+    		selectionFramePosted = true;
+    		ViewCompat.postOnAnimation(this, selectionFrame);
+    	}
+    }
+    
+    private void addDirtySelectionPosition(float position){
+    	int floor = (int)position;
+    	addDirtySegment(floor);
+    	if(position != floor){
+    		addDirtySegment(floor + 1);
+    	}
+    }
+    
+    /**
+     * stops the selection animation where it is, the selection jumps to its target
+     */
+    private void cancelSelectionAnimation(){
+    	if(selectionFramePosted){
+    		removeCallbacks(selectionFrame);
+    		selectionFramePosted = false;
+    	}
+    	if(selectionAnimating){
+    		selectionAnimating = false;
+    		invalidate();
+    	}
+    }
+    
+    //state of OnSelectionChangeListener's dispatch, one frame callback is reused for every change
+    private boolean selectionChangePending = false;
+    private boolean selectionSettlePending = false;
+    private boolean selectionFromUser = false;		//origin of the latest change
+    private boolean selectionDispatchPosted = false;
+    private int reportedChangedIndex = DEFAULT_SELECTED_INDEX;
+    private int reportedSettledIndex = DEFAULT_SELECTED_INDEX;
+    private final Runnable selectionDispatch = new Runnable() {
+		@Override
+		public void run() {
+			selectionDispatchPosted = false;
+			dispatchSelection();
+		}
+	};
+    
+    /**
+     * records that mSelectedIndex changed, the listener hears of it on the next frame
+     */
+    private void postSelectionChange(boolean fromUser){
+    	if(mOnSelectionChangeListener == null){
+    		return;
+    	}
+    	selectionFromUser = fromUser;
+    	selectionChangePending = true;
+    	selectionSettlePending = true;
+    	postSelectionDispatch();
+    }
+    
+    private void postSelectionDispatch(){
+    	if(!selectionDispatchPosted){
+    		selectionDispatchPosted = true;
+    		ViewCompat.postOnAnimation(this, selectionDispatch);
+    	}
+    }
+    
+    private void dispatchSelection(){
+    	OnSelectionChangeListener listener = mOnSelectionChangeListener;
+    	if(listener == null){
+    		selectionChangePending = false;
+    		selectionSettlePending = false;
+    		return;
+    	}
+    	int index = mSelectedIndex;
+    	if(selectionChangePending){
+    		selectionChangePending = false;
+    		if(index != reportedChangedIndex){
+    			reportedChangedIndex = index;
+    			listener.onSelectionChanged(index, selectionFromUser);
+    		}
+    	}
+    	if(selectionSettlePending){
+    		if(!isSelectionIdle()){
+    			//checked again next frame until everything came to rest
+    			postSelectionDispatch();
+    			return;
+    		}
+    		selectionSettlePending = false;
+    		if(index != reportedSettledIndex){
+    			reportedSettledIndex = index;
+    			listener.onSelectionSettled(index, selectionFromUser);
+    		}
+    	}
+    }
+    
+    /**
+     * @return true if neither the selection animation, this view's scroll nor the bound ViewPager is moving
+     */
+    private boolean isSelectionIdle(){
+    	return !selectionAnimating
+    			&& (scroller == null || scroller.isFinished())
+    			&& !isBeingDragged
+    			&& viewPagerScrollState == ViewPager.SCROLL_STATE_IDLE;
+    }
+    
+    //batching of edit().apply(), requestLayout() and invalidate() are held back while batchDepth > 0
+    private Editor editor;
+    private int batchDepth = 0;
+    private boolean batchLayoutRequested = false;
+    private boolean batchInvalidateRequested = false;
+    
+    //state of the ViewPager's scroll as last drawn, see applyViewPagerScroll()
     private int viewPagerPosition = -1;
     private float viewPagerPositionOffset = 0f;
+    private int drawnPagerPosition = -1;	//selection drawn for the ViewPager, quantized to color steps
+    private int drawnPagerStep = 0;
+    //latest onPageScrolled() values, applied at most once per frame
+    private int pendingPagerPosition = -1;
+    private float pendingPagerOffset = 0f;
+    private boolean viewPagerFramePosted = false;
+    private int viewPagerScrollState = ViewPager.SCROLL_STATE_IDLE;
+    private boolean viewPagerDragged = false;	//true from a drag of the pages until they are idle again
+    private boolean viewPagerScrollDeferred = false;	//true while waiting for this view to be on screen again
+    private final Rect visibleRect = new Rect();
+    private final Runnable viewPagerFrame = new Runnable() {
+		@Override
+		public void run() {
+			viewPagerFramePosted = false;
+			boolean traced = traceBegin(TRACE_VIEWPAGER_FRAME);
+			//checked once per frame rather than on every callback
+			if(isOnScreen()){
+				applyViewPagerScroll();
+			}else{
+				deferViewPagerScroll();
+			}
+			traceEnd(traced);
+		}
+	};
+    private final ViewTreeObserver.OnPreDrawListener deferredViewPagerScroll = new ViewTreeObserver.OnPreDrawListener() {
+		@Override
+		public boolean onPreDraw() {
+			if(isOnScreen()){
+				stopDeferringViewPagerScroll();
+				applyViewPagerScroll();
+			}
+			return true;
+		}
+	};
+    
     private class InternalViewPagerListener implements ViewPager.OnPageChangeListener {
         
         @Override
         public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+        	boolean traced = traceBegin(TRACE_VIEWPAGER_SCROLL);
+        	long start = metricsStart();
         	if(mIsGradient){
-        		mSelectedIndex = position;
-        		viewPagerPosition = position;
-        		viewPagerPositionOffset = positionOffset;
-        		invalidate();
+        		//several callbacks may arrive within one frame, only the last one is drawn
+        		pendingPagerPosition = position;
+        		pendingPagerOffset = positionOffset;
+        		//a deferred scroll picks up the latest values once this view is on screen again
+        		if(!viewPagerFramePosted && !viewPagerScrollDeferred){
+        			viewPagerFramePosted = true;
+        			ViewCompat.postOnAnimation(SegmentControlView.this, viewPagerFrame);
+        		}
         	}
+        	metricsEnd(MetricsListener.EVENT_VIEWPAGER_SCROLL, start);
+        	traceEnd(traced);
         }
 
         @Override
         public void onPageScrollStateChanged(int state) {
+        	viewPagerScrollState = state;
+        	if(state == ViewPager.SCROLL_STATE_DRAGGING){
+        		viewPagerDragged = true;
+        	}else if(state == ViewPager.SCROLL_STATE_IDLE){
+        		viewPagerDragged = false;
+        	}
         }
 
         @Override
         public void onPageSelected(int position) {
         	if(mIsGradient){
+        		//the gradient keeps following the scroll, only the index is updated
+        		if(mSelectedIndex != position){
+        			mSelectedIndex = position;
+        			postSelectionChange(viewPagerDragged);
+        		}
         	}else{
-        		SegmentControlView.this.setSelectedIndex(position);
+        		SegmentControlView.this.setSelectedIndex(position, viewPagerDragged);
         	}
         }
     }
-
-    private int getDarkColor(int color, float darkCoefficient){
-    	
-    	int a = (color & 0xff000000) >>> 24;
-    	int r = (color & 0x00ff0000) >>> 16;
-    	int g = (color & 0x0000ff00) >>> 8;
-    	int b = (color & 0x000000ff) >>> 0;
-    	
-    	r = (int)(r * darkCoefficient);
-    	g = (int)(g * darkCoefficient);
-    	b = (int)(b * darkCoefficient);
-    	
-    	return a << 24 | r << 16 | g << 8 | b;
-    }
-   
-    private int getEvaluateColor(float fraction, int startColor, int endColor){
-    	
-    	int a, r, g, b;
-    	
-    	int sA = (startColor & 0xff000000) >>> 24;
-    	int sR = (startColor & 0x00ff0000) >>> 16;
-    	int sG = (startColor & 0x0000ff00) >>> 8;
-    	int sB = (startColor & 0x000000ff) >>> 0;
-    	
-    	int eA = (endColor & 0xff000000) >>> 24;
-    	int eR = (endColor & 0x00ff0000) >>> 16;
-    	int eG = (endColor & 0x0000ff00) >>> 8;
-    	int eB = (endColor & 0x000000ff) >>> 0;
-    	
-    	a = (int)(sA + (eA - sA) * fraction);
-    	r = (int)(sR + (eR - sR) * fraction);
-    	g = (int)(sG + (eG - sG) * fraction);
-    	b = (int)(sB + (eB - sB) * fraction);
-    	
-    	return a << 24 | r << 16 | g << 8 | b;
-    }
     
-    private boolean isStringArrayEmpty(String[] array){
-    	return (array == null || array.length == 0);
+    /**
+     * takes the latest ViewPager scroll, redraws only if the quantized colors changed
+     */
+    private void applyViewPagerScroll(){
+    	int position = pendingPagerPosition;
+    	float offset = pendingPagerOffset;
+    	if(position < 0){
+    		return;
+    	}
+    	int oldSelectedIndex = mSelectedIndex;
+    	if(offset == 0f && mSelectedIndex != position){
+    		//settled on a page
+    		mSelectedIndex = position;
+    		postSelectionChange(viewPagerDragged);
+    	}
+    	viewPagerPosition = position;
+    	viewPagerPositionOffset = offset;
+    	followViewPager(position, offset);
+    	//an offset too small to change a color looks like one of the two segments is selected
+    	int drawnPosition = position;
+    	int drawnStep = SegmentControlDrawable.getColorStep(offset);
+    	if(drawnStep == SegmentColors.COLOR_RAMP_STEPS){
+    		drawnPosition++;
+    		drawnStep = 0;
+    	}
+    	if(drawnPosition == drawnPagerPosition && drawnStep == drawnPagerStep){
+    		return;
+    	}
+    	//segments drawn with the old state and those drawn with the new one
+    	dirtyRect.setEmpty();
+    	addDirtySegment(oldSelectedIndex);
+    	addDirtySegment(drawnPagerPosition);
+    	addDirtySegment(drawnPagerPosition + 1);
+    	addDirtySegment(drawnPosition);
+    	addDirtySegment(drawnPosition + 1);
+    	drawnPagerPosition = drawnPosition;
+    	drawnPagerStep = drawnStep;
+    	invalidateDirtyRect();
     }
     
-    private static int sp2px(Context context, float spValue) {  
-        final float fontScale = context.getResources().getDisplayMetrics().scaledDensity;  
-        return (int) (spValue * fontScale + 0.5f);  
-    } 
+    /**
+     * @return false if this view is hidden or scrolled out of its parents' bounds
+     */
+    private boolean isOnScreen(){
+    	return isShown() && getLocalVisibleRect(visibleRect);
+    }
     
-    private int getTextWidth(String text, Paint paint){
-    	if(!TextUtils.isEmpty(text)){
-    		return (int)(paint.measureText(text) + 0.5f);
-  		}
-    	return -1;
+    /**
+     * the scroll is applied on the first frame this view is on screen again
+     */
+    private void deferViewPagerScroll(){
+    	if(!viewPagerScrollDeferred){
+    		viewPagerScrollDeferred = true;
+    		getViewTreeObserver().addOnPreDrawListener(deferredViewPagerScroll);
+    	}
     }
     
-    private int getTextHeight(String text, Paint paint){
-    	if(!TextUtils.isEmpty(text)){
-    		Rect textBounds = new Rect();
-    		paint.getTextBounds(text, 0, text.length(), textBounds);
-  			return textBounds.height();
-  		}
-    	return -1;
+    private void stopDeferringViewPagerScroll(){
+    	if(viewPagerScrollDeferred){
+    		viewPagerScrollDeferred = false;
+    		getViewTreeObserver().removeOnPreDrawListener(deferredViewPagerScroll);
+    	}
+    }
+
+    /**
+     * keeps the segments the ViewPager moves between in view while the pages are swiped
+     */
+    private void followViewPager(int position, float positionOffset){
+    	if(!mIsScrollable || scrollRange == 0 || isBeingDragged || geometryDirty
+    			|| (scroller != null && !scroller.isFinished())
+    			|| position < 0 || position >= getCount()){
+    		return;
+    	}
+    	int from = getCenteredScrollX(position);
+    	int to = position + 1 < getCount() ? getCenteredScrollX(position + 1) : from;
+    	int x = Math.round(from + (to - from) * positionOffset);
+    	if(x != getScrollX()){
+    		scrollTo(x, 0);
+    	}
     }
 }
\ No newline at end of file
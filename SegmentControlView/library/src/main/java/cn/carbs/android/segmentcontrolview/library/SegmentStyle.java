@@ -0,0 +1,333 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.content.Context;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.TextPaint;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * an immutable look of SegmentControlView: colors, dimensions and the text's typeface.
+ * styles are pooled, building a style equal to one still in use returns that one, so
+ * many views styled alike, e.g. in the rows of a list, share one style together with its
+ * paints and color tables instead of each carrying its own copies.
+ * styles can be built on any thread, but only draw with them on the UI thread, the shared
+ * paints are configured while drawing.
+ *
+ * usage:
+ * 	SegmentStyle style = new SegmentStyle.Builder(context)
+ * 		.setTextColor(normal, selected)
+ * 		.setTextSize(size)
+ * 		.build();
+ * 	segmentControlView.setSegmentStyle(style);
+ */
+public final class SegmentStyle {
+
+	private static final WeakHashMap<SegmentStyle, WeakReference<SegmentStyle>> sPool = new WeakHashMap<SegmentStyle, WeakReference<SegmentStyle>>();
+
+	final int backgroundColorNormal;
+	final int backgroundColorSelected;
+	final int textColorNormal;
+	final int textColorSelected;
+	final int frameColor;
+	final int frameWidth;
+	final int frameCornerRadius;
+	final int textSize;
+	final Typeface typeface;
+	final int segmentPaddingHorizontal;
+	final int segmentPaddingVertical;
+	final float touchedDarkCoefficient;
+	final boolean gammaCorrectGradient;
+	private final int hash;
+
+	//derived from the values above, built with the style and shared by every view using this style
+	private final TextPaint paintText;
+	private final Paint paintBackground;
+	private final Paint paintFrame;
+	private final int[] backgroundRamp;
+	private final int[] pressedBackgroundRamp;
+	private final int[] textRamp;
+
+	/**
+	 * @param withPaints false for a style that only looks up the pool, it gets no paints or color tables
+	 */
+	private SegmentStyle(Builder b, boolean withPaints){
+		backgroundColorNormal = b.backgroundColorNormal;
+		backgroundColorSelected = b.backgroundColorSelected;
+		textColorNormal = b.textColorNormal;
+		textColorSelected = b.textColorSelected;
+		frameColor = b.frameColor;
+		frameWidth = b.frameWidth;
+		frameCornerRadius = b.frameCornerRadius;
+		textSize = b.textSize;
+		typeface = b.typeface;
+		segmentPaddingHorizontal = b.segmentPaddingHorizontal;
+		segmentPaddingVertical = b.segmentPaddingVertical;
+		touchedDarkCoefficient = b.touchedDarkCoefficient;
+		gammaCorrectGradient = b.gammaCorrectGradient;
+		int h = backgroundColorNormal;
+		h = 31 * h + backgroundColorSelected;
+		h = 31 * h + textColorNormal;
+		h = 31 * h + textColorSelected;
+		h = 31 * h + frameColor;
+		h = 31 * h + frameWidth;
+		h = 31 * h + frameCornerRadius;
+		h = 31 * h + textSize;
+		h = 31 * h + (typeface == null ? 0 : typeface.hashCode());
+		h = 31 * h + segmentPaddingHorizontal;
+		h = 31 * h + segmentPaddingVertical;
+		h = 31 * h + Float.floatToIntBits(touchedDarkCoefficient);
+		h = 31 * h + (gammaCorrectGradient ? 1 : 0);
+		hash = h;
+		if(withPaints){
+			paintText = new TextPaint();
+			paintText.setAntiAlias(true);
+			paintText.setTextSize(textSize);
+			paintText.setTypeface(typeface);
+			paintBackground = new Paint();
+			paintBackground.setAntiAlias(true);
+			paintBackground.setStyle(Paint.Style.FILL);
+			paintFrame = new Paint();
+			paintFrame.setAntiAlias(true);
+			paintFrame.setStyle(Paint.Style.STROKE);
+			paintFrame.setStrokeWidth(frameWidth);
+			paintFrame.setColor(frameColor);
+			backgroundRamp = new int[SegmentColors.COLOR_RAMP_STEPS + 1];
+			pressedBackgroundRamp = new int[SegmentColors.COLOR_RAMP_STEPS + 1];
+			textRamp = new int[SegmentColors.COLOR_RAMP_STEPS + 1];
+			SegmentColors.buildColorRamps(backgroundRamp, pressedBackgroundRamp, textRamp,
+					backgroundColorNormal, backgroundColorSelected, textColorNormal, textColorSelected,
+					touchedDarkCoefficient, gammaCorrectGradient);
+		}else{
+			paintText = null;
+			paintBackground = null;
+			paintFrame = null;
+			backgroundRamp = null;
+			pressedBackgroundRamp = null;
+			textRamp = null;
+		}
+	}
+
+	public int getBackgroundColorNormal(){
+		return backgroundColorNormal;
+	}
+
+	public int getBackgroundColorSelected(){
+		return backgroundColorSelected;
+	}
+
+	public int getTextColorNormal(){
+		return textColorNormal;
+	}
+
+	public int getTextColorSelected(){
+		return textColorSelected;
+	}
+
+	public int getFrameColor(){
+		return frameColor;
+	}
+
+	public int getFrameWidth(){
+		return frameWidth;
+	}
+
+	public int getFrameCornerRadius(){
+		return frameCornerRadius;
+	}
+
+	public int getTextSize(){
+		return textSize;
+	}
+
+	public Typeface getTypeface(){
+		return typeface;
+	}
+
+	public int getSegmentPaddingHorizontal(){
+		return segmentPaddingHorizontal;
+	}
+
+	public int getSegmentPaddingVertical(){
+		return segmentPaddingVertical;
+	}
+
+	public float getTouchedDarkCoefficient(){
+		return touchedDarkCoefficient;
+	}
+
+	public boolean getGammaCorrectGradient(){
+		return gammaCorrectGradient;
+	}
+
+	TextPaint getTextPaint(){
+		return paintText;
+	}
+
+	Paint getBackgroundPaint(){
+		return paintBackground;
+	}
+
+	Paint getFramePaint(){
+		return paintFrame;
+	}
+
+	int[] getBackgroundRamp(){
+		return backgroundRamp;
+	}
+
+	int[] getPressedBackgroundRamp(){
+		return pressedBackgroundRamp;
+	}
+
+	int[] getTextRamp(){
+		return textRamp;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(this == o) return true;
+		if(!(o instanceof SegmentStyle)) return false;
+		SegmentStyle s = (SegmentStyle)o;
+		return hash == s.hash
+				&& backgroundColorNormal == s.backgroundColorNormal
+				&& backgroundColorSelected == s.backgroundColorSelected
+				&& textColorNormal == s.textColorNormal
+				&& textColorSelected == s.textColorSelected
+				&& frameColor == s.frameColor
+				&& frameWidth == s.frameWidth
+				&& frameCornerRadius == s.frameCornerRadius
+				&& textSize == s.textSize
+				&& typeface == s.typeface
+				&& segmentPaddingHorizontal == s.segmentPaddingHorizontal
+				&& segmentPaddingVertical == s.segmentPaddingVertical
+				&& touchedDarkCoefficient == s.touchedDarkCoefficient
+				&& gammaCorrectGradient == s.gammaCorrectGradient;
+	}
+
+	/**
+	 * collects the values of a SegmentStyle, unset values are SegmentControlView's defaults
+	 */
+	public static final class Builder {
+
+		private int backgroundColorNormal = SegmentControlDrawable.DEFAULT_COLOR_BACKGROUND_NORMAL;
+		private int backgroundColorSelected = SegmentControlDrawable.DEFAULT_COLOR_BACKGROUND_SELECTED;
+		private int textColorNormal = SegmentControlDrawable.DEFAULT_COLOR_TEXT_NORMAL;
+		private int textColorSelected = SegmentControlDrawable.DEFAULT_COLOR_TEXT_SELECTED;
+		private int frameColor = SegmentControlDrawable.DEFAULT_COLOR_FRAME;
+		private int frameWidth = SegmentControlDrawable.DEFAULT_FRAME_WIDTH_PX;
+		private int frameCornerRadius = SegmentControlDrawable.DEFAULT_FRAME_CORNER_RADIUS_PX;
+		private int textSize;
+		private Typeface typeface = null;
+		private int segmentPaddingHorizontal = SegmentControlDrawable.DEFAULT_SEGMENT_PADDING_HORIZONTAL;
+		private int segmentPaddingVertical = SegmentControlDrawable.DEFAULT_SEGMENT_PADDING_VERTICAL;
+		private float touchedDarkCoefficient = SegmentControlDrawable.TOUCHED_BACKGROUND_DARK_COEFFICIENT;
+		private boolean gammaCorrectGradient = false;
+
+		/**
+		 * @param context used to convert the default text size to pixels
+		 */
+		public Builder(Context context){
+			textSize = SegmentControlDrawable.sp2px(context, SegmentControlDrawable.DEFAULT_TEXT_SIZE_SP);
+		}
+
+		/**
+		 * starts with the values of the given style
+		 */
+		public Builder(SegmentStyle style){
+			backgroundColorNormal = style.backgroundColorNormal;
+			backgroundColorSelected = style.backgroundColorSelected;
+			textColorNormal = style.textColorNormal;
+			textColorSelected = style.textColorSelected;
+			frameColor = style.frameColor;
+			frameWidth = style.frameWidth;
+			frameCornerRadius = style.frameCornerRadius;
+			textSize = style.textSize;
+			typeface = style.typeface;
+			segmentPaddingHorizontal = style.segmentPaddingHorizontal;
+			segmentPaddingVertical = style.segmentPaddingVertical;
+			touchedDarkCoefficient = style.touchedDarkCoefficient;
+			gammaCorrectGradient = style.gammaCorrectGradient;
+		}
+
+		public Builder setBackgroundColor(int backgroundColorNormal, int backgroundColorSelected){
+			this.backgroundColorNormal = backgroundColorNormal;
+			this.backgroundColorSelected = backgroundColorSelected;
+			return this;
+		}
+
+		public Builder setTextColor(int textColorNormal, int textColorSelected){
+			this.textColorNormal = textColorNormal;
+			this.textColorSelected = textColorSelected;
+			return this;
+		}
+
+		public Builder setFrameColor(int frameColor){
+			this.frameColor = frameColor;
+			return this;
+		}
+
+		public Builder setFrameWidth(int frameWidth){
+			this.frameWidth = frameWidth;
+			return this;
+		}
+
+		public Builder setFrameCornerRadius(int frameCornerRadius){
+			this.frameCornerRadius = frameCornerRadius;
+			return this;
+		}
+
+		public Builder setTextSize(int textSize){
+			this.textSize = textSize;
+			return this;
+		}
+
+		public Builder setTypeface(Typeface typeface){
+			this.typeface = typeface;
+			return this;
+		}
+
+		public Builder setSegmentPadding(int horizontal, int vertical){
+			this.segmentPaddingHorizontal = horizontal;
+			this.segmentPaddingVertical = vertical;
+			return this;
+		}
+
+		/**
+		 * @param touchedDarkCoefficient in (0, 1], 1 means no pressed effect
+		 */
+		public Builder setTouchedDarkCoefficient(float touchedDarkCoefficient){
+			this.touchedDarkCoefficient = touchedDarkCoefficient;
+			return this;
+		}
+
+		public Builder setGammaCorrectGradient(boolean gammaCorrectGradient){
+			this.gammaCorrectGradient = gammaCorrectGradient;
+			return this;
+		}
+
+		/**
+		 * @return a pooled style, the same instance for equal values as long as it is in use
+		 */
+		public SegmentStyle build(){
+			//the pool is shared by every thread building styles
+			synchronized(sPool){
+				WeakReference<SegmentStyle> ref = sPool.get(new SegmentStyle(this, false));
+				SegmentStyle pooled = ref == null ? null : ref.get();
+				if(pooled != null){
+					return pooled;
+				}
+				SegmentStyle style = new SegmentStyle(this, true);
+				sPool.put(style, new WeakReference<SegmentStyle>(style));
+				return style;
+			}
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * a bounded LRU cache of texts' width and height, shared by all SegmentControlViews.
+ * an entry is keyed by (text, text size, typeface, font scale), so controls showing
+ * the same labels measure every label only once.
+ * only plain String texts are cached, styled texts are measured on every call.
+ * only touch it from the UI thread, the lookup key and the bounds rect are reused.
+ */
+final class TextMetricsCache {
+
+	private static final int MAX_ENTRIES = 256;
+
+	private static final Metrics sProbe = new Metrics();
+	private static final Metrics sUncached = new Metrics();
+	private static final Rect sBounds = new Rect();
+	private static float sFontScale = 0f;
+
+	private static final Cache sCache = new Cache();
+
+	private TextMetricsCache(){
+	}
+
+	/**
+	 * the metrics in access order, the least recently measured are dropped first
+	 */
+	private static final class Cache extends LinkedHashMap<Metrics, Metrics> {
+
+		private static final long serialVersionUID = 1L;
+
+		Cache(){
+			super(32, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Metrics, Metrics> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	}
+
+	/**
+	 * measured width and height of one text, read them right after get()
+	 */
+	static final class Metrics {
+		private String text;
+		private float textSize;
+		private Typeface typeface;
+		private float fontScale;
+		private int hash;
+
+		int width;
+		int height;
+
+		private void set(String text, float textSize, Typeface typeface, float fontScale){
+			this.text = text;
+			this.textSize = textSize;
+			this.typeface = typeface;
+			this.fontScale = fontScale;
+			int h = text.hashCode();
+			h = 31 * h + Float.floatToIntBits(textSize);
+			h = 31 * h + (typeface == null ? 0 : typeface.hashCode());
+			h = 31 * h + Float.floatToIntBits(fontScale);
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) return true;
+			if(!(o instanceof Metrics)) return false;
+			Metrics e = (Metrics)o;
+			return hash == e.hash
+					&& textSize == e.textSize
+					&& typeface == e.typeface
+					&& fontScale == e.fontScale
+					&& text.equals(e.text);
+		}
+	}
+
+	/**
+	 * @param text text to measure, must not be null
+	 * @param paint paint configured with the text size and typeface to measure with
+	 * @param fontScale current font scale of the configuration
+	 * @return the metrics, only valid until the next call
+	 */
+	static Metrics get(CharSequence text, TextPaint paint, float fontScale){
+		if(!(text instanceof String)){
+			//spans may change the width, measure the styled text itself
+			sUncached.width = measureWidth(text, paint);
+			sUncached.height = measureHeight(text, paint, sBounds);
+			return sUncached;
+		}
+		return get((String)text, paint, fontScale);
+	}
+
+	private static Metrics get(String text, TextPaint paint, float fontScale){
+		if(fontScale != sFontScale){
+			sCache.clear();
+			sFontScale = fontScale;
+		}
+		sProbe.set(text, paint.getTextSize(), paint.getTypeface(), fontScale);
+		Metrics entry = sCache.get(sProbe);
+		if(entry == null){
+			entry = new Metrics();
+			entry.set(text, paint.getTextSize(), paint.getTypeface(), fontScale);
+			entry.width = measureWidth(text, paint);
+			entry.height = measureHeight(text, paint, sBounds);
+			sCache.put(entry, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * stores metrics measured elsewhere, e.g. on a background thread, so that get() finds them
+	 */
+	static void put(String text, TextPaint paint, float fontScale, int width, int height){
+		if(fontScale != sFontScale){
+			sCache.clear();
+			sFontScale = fontScale;
+		}
+		Metrics entry = new Metrics();
+		entry.set(text, paint.getTextSize(), paint.getTypeface(), fontScale);
+		entry.width = width;
+		entry.height = height;
+		sCache.put(entry, entry);
+	}
+
+	/**
+	 * measures without touching the cache, so it may be called from any thread
+	 * with a paint and a rect owned by that thread
+	 */
+	static int measureWidth(CharSequence text, TextPaint paint){
+		if(TextUtils.isEmpty(text)){
+			return 0;
+		}
+		if(text instanceof String){
+			return (int)(paint.measureText((String)text) + 0.5f);
+		}
+		return (int)Math.ceil(Layout.getDesiredWidth(text, paint));
+	}
+
+	static int measureHeight(CharSequence text, TextPaint paint, Rect bounds){
+		if(TextUtils.isEmpty(text)){
+			return 0;
+		}
+		String plain = text.toString();
+		paint.getTextBounds(plain, 0, plain.length(), bounds);
+		int height = bounds.height();
+		if(text instanceof Spanned){
+			//size spans make the line taller than the paint's, add what the styled line is taller by
+			StaticLayout layout = new StaticLayout(text, paint, Math.max(1, measureWidth(text, paint)),
+					Layout.Alignment.ALIGN_NORMAL, 1f, 0f, false);
+			int lineHeight = layout.getLineBottom(0) - layout.getLineTop(0);
+			height += Math.max(0, lineHeight - paint.getFontMetricsInt(null));
+		}
+		return height;
+	}
+
+	static void clear(){
+		sCache.clear();
+	}
+}
@@ -0,0 +1,212 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.app.Activity;
+import android.support.v4.view.ViewPager;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * what SegmentControlView allocates per frame, per measure, per tap and per ViewPager scroll
+ * once it is warmed up: nothing, as it may run every 16ms.
+ * QuietShadows keep Robolectric's shadows, which allocate for every call, out of the count.
+ * the selection animation is off, it reads the time from Robolectric's clock, which allocates too.
+ * the views are attached to an activity's window, as a detached view takes other paths, e.g.
+ * getLocalVisibleRect() allocates a Point without a window
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21, shadows = {
+		QuietShadows.QuietView.class,
+		QuietShadows.QuietPaint.class,
+		QuietShadows.QuietTextPaint.class,
+		QuietShadows.QuietPath.class,
+		QuietShadows.QuietCanvas.class,
+		QuietShadows.QuietMatrix.class,
+		QuietShadows.QuietDrawable.class,
+		QuietShadows.QuietBitmap.class})
+public class AllocationTest {
+
+	private static final String[] TEXTS = {"one", "two", "three", "four", "five"};
+	private static final int WIDTH = 300;
+
+	private Activity activity;
+	private ViewCanvas canvas;
+
+	@Before
+	public void setUp(){
+		assumeTrue(Allocations.isSupported());
+		activity = TestWindow.open();
+		canvas = new ViewCanvas();
+	}
+
+	/**
+	 * onMeasure() directly, View.measure() caches sizes in an array Robolectric intercepts
+	 */
+	@Test
+	public void measureAllocatesNothing(){
+		final TestSegmentControlView view = attach(TEXTS);
+		final int exactly = View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY);
+		final int atMost = View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.AT_MOST);
+		final int unspecified = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+		assertNoAllocations("measure", new Runnable() {
+			@Override
+			public void run() {
+				view.onMeasure(exactly, unspecified);
+				view.onMeasure(atMost, atMost);
+				view.onMeasure(unspecified, unspecified);
+			}
+		});
+	}
+
+	@Test
+	public void drawAllocatesNothing(){
+		int[] renderModes = {
+				SegmentControlView.RENDER_MODE_DEFAULT,
+				SegmentControlView.RENDER_MODE_LAYERS,
+				SegmentControlView.RENDER_MODE_SINGLE_PASS};
+		for(int renderMode : renderModes){
+			final TestSegmentControlView view = attach(TEXTS);
+			view.setRenderMode(renderMode);
+			canvas.setSize(view);
+			assertNoAllocations("draw in render mode " + renderMode, new Runnable() {
+				int selection = 0;
+				@Override
+				public void run() {
+					view.setSelectedIndex(selection++ % TEXTS.length);
+					view.runFrames();
+					view.draw(canvas);
+				}
+			});
+		}
+	}
+
+	@Test
+	public void drawWithOutlineClipAllocatesNothing(){
+		final TestSegmentControlView view = attach(TEXTS);
+		view.setOutlineClip(true);
+		canvas.setSize(view);
+		assertNoAllocations("draw with the outline clip", new Runnable() {
+			@Override
+			public void run() {
+				view.draw(canvas);
+			}
+		});
+	}
+
+	@Test
+	public void tapsAllocateNothing(){
+		final TestSegmentControlView view = attach(TEXTS);
+		final TestSegmentControlView empty = attach(null);
+		canvas.setSize(view);
+		final MotionEvent[] taps = new MotionEvent[2 * TEXTS.length];
+		for(int i = 0; i < TEXTS.length; i++){
+			float x = WIDTH * (i + 0.5f) / TEXTS.length;
+			float y = view.getHeight() / 2f;
+			taps[2 * i] = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, x, y, 0);
+			taps[2 * i + 1] = MotionEvent.obtain(0, 0, MotionEvent.ACTION_UP, x, y, 0);
+		}
+		//Robolectric's MotionEvent can not be quiet, the taps on a view without segments
+		//read the events as often and tell what reading them costs
+		long tapped = Allocations.steadyState(new Taps(view, taps));
+		long read = Allocations.steadyState(new Taps(empty, taps));
+		assertEquals("bytes allocated by taps", 0, tapped - read);
+	}
+
+	@Test
+	public void viewPagerScrollAllocatesNothing(){
+		final TestSegmentControlView view = attach(TEXTS);
+		final TestViewPager viewPager = new TestViewPager(activity);
+		view.setGradient(true);
+		view.setViewPager(viewPager);
+		canvas.setSize(view);
+		assertNoAllocations("ViewPager scroll", new Runnable() {
+			@Override
+			public void run() {
+				viewPager.setScrollState(ViewPager.SCROLL_STATE_DRAGGING);
+				for(int page = 0; page < TEXTS.length - 1; page++){
+					sweep(page, 0f, 1f);
+				}
+				for(int page = TEXTS.length - 2; page >= 0; page--){
+					sweep(page, 1f, 0f);
+				}
+				viewPager.setScrollState(ViewPager.SCROLL_STATE_IDLE);
+				view.runFrames();
+			}
+
+			private void sweep(int page, float from, float to){
+				for(int step = 0; step <= 10; step++){
+					float offset = from + (to - from) * step / 10;
+					if(offset == 1f){
+						//the ViewPager reports a settled page with an offset of 0
+						viewPager.select(page + 1);
+						viewPager.scroll(page + 1, 0f);
+					}else{
+						//two callbacks per frame, only the last one is drawn
+						viewPager.scroll(page, offset * 0.9f);
+						viewPager.scroll(page, offset);
+					}
+					view.runFrame();
+					view.draw(canvas);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @param texts null for a view without segments
+	 */
+	private TestSegmentControlView attach(String[] texts){
+		TestSegmentControlView view = new TestSegmentControlView(activity);
+		if(texts != null){
+			view.setTexts(texts);
+		}
+		view.setSelectionAnimationDuration(0);
+		//the framework's click handling posts to Robolectric's scheduler, which allocates
+		view.setClickable(false);
+		FrameLayout parent = new FrameLayout(activity);
+		parent.addView(view, new FrameLayout.LayoutParams(WIDTH, ViewGroup.LayoutParams.WRAP_CONTENT));
+		activity.setContentView(parent);
+		parent.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+				View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+		parent.layout(0, 0, parent.getMeasuredWidth(), parent.getMeasuredHeight());
+		view.runFrames();
+		return view;
+	}
+
+	private static void assertNoAllocations(String what, Runnable action){
+		assertEquals("bytes allocated by " + what, 0, Allocations.steadyState(action));
+	}
+
+	/**
+	 * taps every segment once and draws the frames that follow
+	 */
+	private class Taps implements Runnable {
+
+		private final TestSegmentControlView view;
+		private final MotionEvent[] events;
+
+		Taps(TestSegmentControlView view, MotionEvent[] events){
+			this.view = view;
+			this.events = events;
+		}
+
+		@Override
+		public void run() {
+			for(MotionEvent event : events){
+				view.onTouchEvent(event);
+				view.runFrames();
+				view.draw(canvas);
+			}
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * counts the bytes the current thread allocates, with HotSpot's
+ * com.sun.management.ThreadMXBean.getThreadAllocatedBytes()
+ */
+final class Allocations {
+
+	private static final int WARM_UP_RUNS = 2000;
+	private static final int ROUNDS = 5;
+	private static final int RUNS_PER_ROUND = 200;
+
+	private Allocations(){
+	}
+
+	static boolean isSupported(){
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		return bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()
+				&& ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemoryEnabled();
+	}
+
+	/**
+	 * runs action until it is warmed up, lazily created objects exist and the JIT is done
+	 * with it, then counts what it allocates in several rounds of runs
+	 * @return the bytes allocated by RUNS_PER_ROUND runs of action in its best round,
+	 * a steady state without allocations gives 0
+	 */
+	static long steadyState(Runnable action){
+		for(int i = 0; i < WARM_UP_RUNS; i++){
+			action.run();
+		}
+		long overhead = overhead();
+		long min = Long.MAX_VALUE;
+		for(int round = 0; round < ROUNDS; round++){
+			long before = allocatedBytes();
+			for(int i = 0; i < RUNS_PER_ROUND; i++){
+				action.run();
+			}
+			long after = allocatedBytes();
+			min = Math.min(min, after - before - overhead);
+		}
+		return Math.max(0, min);
+	}
+
+	/**
+	 * what asking for the allocated bytes allocates itself
+	 */
+	private static long overhead(){
+		long min = Long.MAX_VALUE;
+		for(int i = 0; i < 10; i++){
+			long before = allocatedBytes();
+			long after = allocatedBytes();
+			min = Math.min(min, after - before);
+		}
+		return min;
+	}
+
+	private static long allocatedBytes(){
+		return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,311 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.graphics.Outline;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.v4.view.ViewPager;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * what SegmentControlView draws where and in which color, recorded by RecordingCanvas with
+ * the sizes of GeometryShadows' stand-in font, and the render modes against each other,
+ * which have to put the same texts in the same places
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21, shadows = {
+		QuietShadows.QuietView.class,
+		GeometryShadows.GeometryPaint.class,
+		GeometryShadows.GeometryTextPaint.class,
+		GeometryShadows.GeometryStaticLayout.class,
+		GeometryShadows.GeometryPath.class,
+		QuietShadows.QuietCanvas.class,
+		QuietShadows.QuietBitmap.class})
+public class DrawCallTest {
+
+	private static final String[] TEXTS = {"one", "two", "three", "four"};
+	private static final int WIDTH = 300;
+	private static final int SELECTED = 1;
+	//half a pixel either way of rounding, a pixel for centering on odd sizes
+	private static final float TOLERANCE = 1f;
+
+	private static final int TEXT_COLOR_NORMAL = 0xFF0099CC;
+	private static final int TEXT_COLOR_SELECTED = 0xFFFFFFFF;
+	private static final int BACKGROUND_COLOR_NORMAL = 0xFFFFFFFF;
+	private static final int BACKGROUND_COLOR_SELECTED = 0xFF0099CC;
+	private static final int FRAME_COLOR = 0xFF006699;
+	private static final int CORNER_RADIUS = 8;
+	private static final String ELLIPSIS = "\u2026";
+	//Robolectric reads the ellipsis from its resources as the escaped string
+	private static final String ROBOLECTRIC_ELLIPSIS = "\\u2026";
+
+	@Test
+	public void defaultModeDrawsEverySegmentInPlace(){
+		TestSegmentControlView view = create(SegmentControlView.RENDER_MODE_DEFAULT);
+		RecordingCanvas canvas = render(view);
+		ArrayList<RecordingCanvas.Call> fills = getCalls(canvas, RecordingCanvas.PATH, Paint.Style.FILL);
+		ArrayList<RecordingCanvas.Call> frames = getCalls(canvas, RecordingCanvas.PATH, Paint.Style.STROKE);
+		assertEquals("fills " + fills, TEXTS.length, fills.size());
+		assertEquals("frames " + frames, TEXTS.length, frames.size());
+		for(int i = 0; i < TEXTS.length; i++){
+			assertSegment(view, i, fills.get(i));
+			assertEquals(i == SELECTED ? BACKGROUND_COLOR_SELECTED : BACKGROUND_COLOR_NORMAL, fills.get(i).color);
+			assertSegment(view, i, frames.get(i));
+			assertEquals(FRAME_COLOR, frames.get(i).color);
+		}
+		assertTexts(view, canvas, TEXTS);
+	}
+
+	@Test
+	public void singlePassDrawsTheSameTexts(){
+		TestSegmentControlView view = create(SegmentControlView.RENDER_MODE_SINGLE_PASS);
+		RecordingCanvas canvas = render(view);
+		ArrayList<RecordingCanvas.Call> fills = getCalls(canvas, RecordingCanvas.PATH, Paint.Style.FILL);
+		//the outline filled in the normal color, then the selected segment on top of it
+		assertEquals("fills " + fills, 2, fills.size());
+		assertEquals(BACKGROUND_COLOR_NORMAL, fills.get(0).color);
+		assertNear("outline left", getDrawable(view).getSegmentLeft(0), fills.get(0).bounds.left);
+		assertNear("outline right", getDrawable(view).getSegmentRight(TEXTS.length - 1), fills.get(0).bounds.right);
+		assertSegment(view, SELECTED, fills.get(1));
+		assertEquals(BACKGROUND_COLOR_SELECTED, fills.get(1).color);
+		//one batch of separators and one stroke of the outline
+		ArrayList<RecordingCanvas.Call> lines = canvas.getCalls(RecordingCanvas.LINES);
+		assertEquals(1, lines.size());
+		assertEquals(TEXTS.length - 1, lines.get(0).count);
+		assertEquals(FRAME_COLOR, lines.get(0).color);
+		assertEquals(1, getCalls(canvas, RecordingCanvas.PATH, Paint.Style.STROKE).size());
+		assertSameTexts(canvas, render(create(SegmentControlView.RENDER_MODE_DEFAULT)));
+	}
+
+	@Test
+	public void layersBlendTheSelectedSegment(){
+		TestSegmentControlView view = create(SegmentControlView.RENDER_MODE_LAYERS);
+		RecordingCanvas canvas = render(view);
+		//the segments are drawn into the layers, the view only draws those
+		assertEquals(canvas.getCalls().toString(), 2, canvas.getCalls().size());
+		ArrayList<RecordingCanvas.Call> bitmaps = canvas.getCalls(RecordingCanvas.BITMAP);
+		assertEquals(2, bitmaps.size());
+		RecordingCanvas.Call normal = bitmaps.get(0);
+		RecordingCanvas.Call selected = bitmaps.get(1);
+		assertNull("the normal layer is not clipped", normal.clip);
+		assertEquals(0xFF, normal.color >>> 24);
+		assertEquals(0xFF, selected.color >>> 24);
+		assertNear("clip left", getDrawable(view).getSegmentLeft(SELECTED), selected.clip.left);
+		assertNear("clip right", getDrawable(view).getSegmentRight(SELECTED), selected.clip.right);
+		assertNear("layer width", view.getWidth(), normal.bounds.width());
+		assertNear("layer height", view.getHeight(), normal.bounds.height());
+	}
+
+	@Test
+	public void outlineClipFillsRectangles(){
+		TestSegmentControlView view = create(SegmentControlView.RENDER_MODE_DEFAULT);
+		view.setSegmentStyle(new SegmentStyle.Builder(RuntimeEnvironment.application)
+				.setTextColor(TEXT_COLOR_NORMAL, TEXT_COLOR_SELECTED)
+				.setBackgroundColor(BACKGROUND_COLOR_NORMAL, BACKGROUND_COLOR_SELECTED)
+				.setFrameColor(FRAME_COLOR)
+				.setFrameCornerRadius(CORNER_RADIUS)
+				.build());
+		view.setOutlineClip(true);
+		RecordingCanvas canvas = render(view);
+		//the outline clips the corners, the frame's outer edge is as round as the frame
+		Outline outline = new Outline();
+		view.getOutlineProvider().getOutline(view, outline);
+		//the rect and radius of an outline are hidden before API 24
+		Rect rect = ReflectionHelpers.getField(outline, "mRect");
+		float radius = ReflectionHelpers.<Float>getField(outline, "mRadius");
+		assertEquals(getDrawable(view).getBounds(), rect);
+		assertTrue("radius " + radius, radius > CORNER_RADIUS);
+		//so segments are filled with rectangles in a single pass
+		assertEquals(0, getCalls(canvas, RecordingCanvas.PATH, Paint.Style.FILL).size());
+		ArrayList<RecordingCanvas.Call> fills = canvas.getCalls(RecordingCanvas.RECT);
+		assertEquals("fills " + fills, 2, fills.size());
+		assertEquals(BACKGROUND_COLOR_NORMAL, fills.get(0).color);
+		assertSegment(view, SELECTED, fills.get(1));
+		assertEquals(BACKGROUND_COLOR_SELECTED, fills.get(1).color);
+		assertSameTexts(canvas, render(create(SegmentControlView.RENDER_MODE_DEFAULT)));
+	}
+
+	@Test
+	public void twoLineTexts(){
+		int[] renderModes = {
+				SegmentControlView.RENDER_MODE_DEFAULT,
+				SegmentControlView.RENDER_MODE_SINGLE_PASS};
+		for(int renderMode : renderModes){
+			TestSegmentControlView view = create(renderMode);
+			view.setTexts(new String[]{"one", "two words and some more words", "three"});
+			view.setTextMaxLines(2);
+			RecordingCanvas canvas = render(view);
+			ArrayList<RecordingCanvas.Call> lines = getTexts(view, canvas, 1);
+			assertEquals("lines of the second segment " + lines, 2, lines.size());
+			RecordingCanvas.Call first = lines.get(0);
+			RecordingCanvas.Call second = lines.get(1);
+			assertTrue("the second line is below the first", second.bounds.top >= first.bounds.bottom - TOLERANCE);
+			//what does not fit into the two lines is ellipsized into the second
+			assertEllipsized("two words and some more words", second.text);
+			assertWithin(view, 1, first);
+			assertWithin(view, 1, second);
+			//centered as a block
+			assertNear("block center", view.getHeight() / 2f, (first.bounds.top + second.bounds.bottom) / 2f);
+		}
+	}
+
+	@Test
+	public void ellipsizedTexts(){
+		TestSegmentControlView view = create(SegmentControlView.RENDER_MODE_DEFAULT);
+		view.setTexts(new String[]{"one", "a text far too long for its segment", "three"});
+		RecordingCanvas canvas = render(view);
+		ArrayList<RecordingCanvas.Call> texts = getTexts(view, canvas, 1);
+		assertEquals(1, texts.size());
+		assertEllipsized("a text far too long for its segment", texts.get(0).text);
+		assertWithin(view, 1, texts.get(0));
+	}
+
+	@Test
+	public void viewPagerHalfWayBlendsBothSegments(){
+		TestSegmentControlView view = create(SegmentControlView.RENDER_MODE_DEFAULT);
+		TestViewPager viewPager = new TestViewPager(RuntimeEnvironment.application);
+		view.setGradient(true);
+		view.setViewPager(viewPager);
+		//the pager is listened to once the view is attached
+		TestWindow.open().setContentView(view);
+		layout(view);
+		viewPager.setScrollState(ViewPager.SCROLL_STATE_DRAGGING);
+		viewPager.scroll(1, 0.5f);
+		view.runFrames();
+		RecordingCanvas canvas = render(view);
+		ArrayList<RecordingCanvas.Call> fills = getCalls(canvas, RecordingCanvas.PATH, Paint.Style.FILL);
+		assertEquals(TEXTS.length, fills.size());
+		assertEquals(BACKGROUND_COLOR_NORMAL, fills.get(0).color);
+		assertEquals(BACKGROUND_COLOR_NORMAL, fills.get(3).color);
+		int halfWay = fills.get(1).color;
+		assertEquals("both segments half selected", halfWay, fills.get(2).color);
+		assertNotEquals(BACKGROUND_COLOR_NORMAL, halfWay);
+		assertNotEquals(BACKGROUND_COLOR_SELECTED, halfWay);
+		ArrayList<RecordingCanvas.Call> texts = canvas.getCalls(RecordingCanvas.TEXT);
+		assertEquals(texts.get(1).color, texts.get(2).color);
+		assertNotEquals(TEXT_COLOR_NORMAL, texts.get(1).color);
+		assertNotEquals(TEXT_COLOR_SELECTED, texts.get(1).color);
+	}
+
+	private static TestSegmentControlView create(int renderMode){
+		TestSegmentControlView view = new TestSegmentControlView(RuntimeEnvironment.application);
+		view.setTexts(TEXTS);
+		view.setTextColor(TEXT_COLOR_NORMAL, TEXT_COLOR_SELECTED);
+		view.setBackgroundColor(BACKGROUND_COLOR_NORMAL, BACKGROUND_COLOR_SELECTED);
+		view.setFrameColor(FRAME_COLOR);
+		view.setSelectionAnimationDuration(0);
+		view.setSelectedIndex(SELECTED);
+		view.setRenderMode(renderMode);
+		return view;
+	}
+
+	private static void layout(SegmentControlView view){
+		view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+				View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+		view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+	}
+
+	private static RecordingCanvas render(TestSegmentControlView view){
+		layout(view);
+		view.runFrames();
+		RecordingCanvas canvas = new RecordingCanvas();
+		canvas.setSize(view);
+		view.draw(canvas);
+		return canvas;
+	}
+
+	private static SegmentControlDrawable getDrawable(SegmentControlView view){
+		return ReflectionHelpers.getField(view, "segmentDrawable");
+	}
+
+	private static ArrayList<RecordingCanvas.Call> getCalls(RecordingCanvas canvas, int type, Paint.Style style){
+		ArrayList<RecordingCanvas.Call> calls = new ArrayList<RecordingCanvas.Call>();
+		for(RecordingCanvas.Call call : canvas.getCalls(type)){
+			if(call.style == style){
+				calls.add(call);
+			}
+		}
+		return calls;
+	}
+
+	/**
+	 * @return the lines of text drawn in segment i
+	 */
+	private static ArrayList<RecordingCanvas.Call> getTexts(SegmentControlView view, RecordingCanvas canvas, int i){
+		SegmentControlDrawable drawable = getDrawable(view);
+		ArrayList<RecordingCanvas.Call> texts = new ArrayList<RecordingCanvas.Call>();
+		for(RecordingCanvas.Call call : canvas.getCalls(RecordingCanvas.TEXT)){
+			float center = call.bounds.centerX();
+			if(center >= drawable.getSegmentLeft(i) && center < drawable.getSegmentRight(i)){
+				texts.add(call);
+			}
+		}
+		return texts;
+	}
+
+	/**
+	 * every text once, centered in its segment and in the view's height, selected in its color
+	 */
+	private static void assertTexts(SegmentControlView view, RecordingCanvas canvas, String[] texts){
+		SegmentControlDrawable drawable = getDrawable(view);
+		ArrayList<RecordingCanvas.Call> calls = canvas.getCalls(RecordingCanvas.TEXT);
+		assertEquals("texts " + calls, texts.length, calls.size());
+		for(int i = 0; i < texts.length; i++){
+			RecordingCanvas.Call text = calls.get(i);
+			assertEquals(texts[i], text.text);
+			assertNear(texts[i] + " horizontally centered",
+					(drawable.getSegmentLeft(i) + drawable.getSegmentRight(i)) / 2f, text.bounds.centerX());
+			assertNear(texts[i] + " vertically centered", view.getHeight() / 2f, text.bounds.centerY());
+			assertEquals(texts[i] + " color", i == SELECTED ? TEXT_COLOR_SELECTED : TEXT_COLOR_NORMAL, text.color);
+		}
+	}
+
+	private static void assertSameTexts(RecordingCanvas expected, RecordingCanvas actual){
+		ArrayList<RecordingCanvas.Call> expectedTexts = expected.getCalls(RecordingCanvas.TEXT);
+		ArrayList<RecordingCanvas.Call> actualTexts = actual.getCalls(RecordingCanvas.TEXT);
+		assertEquals(expectedTexts.toString(), actualTexts.toString());
+	}
+
+	/**
+	 * a fill or frame of segment i spans the segment and the frame's height
+	 */
+	private static void assertSegment(SegmentControlView view, int i, RecordingCanvas.Call call){
+		SegmentControlDrawable drawable = getDrawable(view);
+		assertNear("left of segment " + i, drawable.getSegmentLeft(i), call.bounds.left);
+		assertNear("right of segment " + i, drawable.getSegmentRight(i), call.bounds.right);
+		assertTrue("segment " + i + " within the view", call.bounds.top >= 0 && call.bounds.bottom <= view.getHeight());
+	}
+
+	private static void assertWithin(SegmentControlView view, int i, RecordingCanvas.Call text){
+		SegmentControlDrawable drawable = getDrawable(view);
+		assertTrue(text + " within segment " + i, text.bounds.left >= drawable.getSegmentLeft(i)
+				&& text.bounds.right <= drawable.getSegmentRight(i));
+	}
+
+	/**
+	 * drawn is a part of text and an ellipsis
+	 */
+	private static void assertEllipsized(String text, String drawn){
+		String ellipsis = drawn.endsWith(ROBOLECTRIC_ELLIPSIS) ? ROBOLECTRIC_ELLIPSIS : ELLIPSIS;
+		assertTrue(drawn, drawn.endsWith(ellipsis));
+		String part = drawn.substring(0, drawn.length() - ellipsis.length()).trim();
+		assertTrue(drawn, part.length() > 0 && text.contains(part));
+	}
+
+	private static void assertNear(String what, float expected, float actual){
+		assertTrue(what + ": expected " + expected + " but was " + actual, Math.abs(expected - actual) <= TOLERANCE);
+	}
+}
@@ -0,0 +1,405 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+import org.robolectric.internal.Shadow;
+import org.robolectric.internal.ShadowExtractor;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+
+/**
+ * shadows that give paints, texts and paths a size, so that tests can check where things are
+ * drawn: paints keep their colors and measure texts in a monospaced stand-in font, and paths
+ * keep their bounds. nothing is rasterized, RecordingCanvas tells what is drawn where
+ */
+public class GeometryShadows {
+
+	/** advance of every character, relative to the text size */
+	static final float CHAR_ADVANCE = 0.5f;
+	static final float ASCENT = -0.8f;
+	static final float DESCENT = 0.2f;
+
+	@Implements(Paint.class)
+	public static class GeometryPaint {
+
+		@RealObject
+		private Paint realPaint;
+
+		private int flags;
+		private int color;
+		private Paint.Style style;
+		private float strokeWidth;
+		private float textSize;
+		private Typeface typeface;
+		private ColorFilter colorFilter;
+
+		@Implementation
+		public void __constructor__(){
+			reset();
+			Shadow.invokeConstructor(Paint.class, realPaint);
+		}
+
+		@Implementation
+		public void __constructor__(int flags){
+			reset();
+			Shadow.invokeConstructor(Paint.class, realPaint, ClassParameter.from(int.class, flags));
+		}
+
+		@Implementation
+		public void __constructor__(Paint paint){
+			Shadow.invokeConstructor(Paint.class, realPaint, ClassParameter.from(Paint.class, paint));
+			set(paint);
+		}
+
+		@Implementation
+		public void reset(){
+			flags = 0;
+			color = 0xff000000;
+			style = Paint.Style.FILL;
+			strokeWidth = 0;
+			textSize = 12;
+			typeface = null;
+			colorFilter = null;
+		}
+
+		@Implementation
+		public void set(Paint paint){
+			Shadow.directlyOn(realPaint, Paint.class, "set", ClassParameter.from(Paint.class, paint));
+			GeometryPaint src = (GeometryPaint)ShadowExtractor.extract(paint);
+			flags = src.flags;
+			color = src.color;
+			style = src.style;
+			strokeWidth = src.strokeWidth;
+			textSize = src.textSize;
+			typeface = src.typeface;
+			colorFilter = src.colorFilter;
+		}
+
+		@Implementation
+		public int getFlags(){
+			return flags;
+		}
+
+		@Implementation
+		public void setFlags(int flags){
+			this.flags = flags;
+		}
+
+		@Implementation
+		public void setAntiAlias(boolean antiAlias){
+			flags = antiAlias ? flags | Paint.ANTI_ALIAS_FLAG : flags & ~Paint.ANTI_ALIAS_FLAG;
+		}
+
+		@Implementation
+		public int getColor(){
+			return color;
+		}
+
+		@Implementation
+		public void setColor(int color){
+			this.color = color;
+		}
+
+		@Implementation
+		public int getAlpha(){
+			return color >>> 24;
+		}
+
+		@Implementation
+		public void setAlpha(int alpha){
+			color = (color & 0x00ffffff) | (alpha << 24);
+		}
+
+		@Implementation
+		public Paint.Style getStyle(){
+			return style;
+		}
+
+		@Implementation
+		public void setStyle(Paint.Style style){
+			this.style = style;
+		}
+
+		@Implementation
+		public float getStrokeWidth(){
+			return strokeWidth;
+		}
+
+		@Implementation
+		public void setStrokeWidth(float strokeWidth){
+			this.strokeWidth = strokeWidth;
+		}
+
+		@Implementation
+		public float getTextSize(){
+			return textSize;
+		}
+
+		@Implementation
+		public void setTextSize(float textSize){
+			this.textSize = textSize;
+		}
+
+		@Implementation
+		public Typeface getTypeface(){
+			return typeface;
+		}
+
+		@Implementation
+		public Typeface setTypeface(Typeface typeface){
+			this.typeface = typeface;
+			return typeface;
+		}
+
+		@Implementation
+		public ColorFilter getColorFilter(){
+			return colorFilter;
+		}
+
+		@Implementation
+		public ColorFilter setColorFilter(ColorFilter colorFilter){
+			this.colorFilter = colorFilter;
+			return colorFilter;
+		}
+
+		@Implementation
+		public float ascent(){
+			return ASCENT * textSize;
+		}
+
+		@Implementation
+		public float descent(){
+			return DESCENT * textSize;
+		}
+
+		@Implementation
+		public float getFontMetrics(Paint.FontMetrics metrics){
+			if(metrics != null){
+				metrics.top = metrics.ascent = ascent();
+				metrics.bottom = metrics.descent = descent();
+				metrics.leading = 0;
+			}
+			return descent() - ascent();
+		}
+
+		@Implementation
+		public int getFontMetricsInt(Paint.FontMetricsInt metrics){
+			int ascent = (int)Math.floor(ascent());
+			int descent = (int)Math.ceil(descent());
+			if(metrics != null){
+				metrics.top = metrics.ascent = ascent;
+				metrics.bottom = metrics.descent = descent;
+				metrics.leading = 0;
+			}
+			return descent - ascent;
+		}
+
+		private float advance(){
+			return CHAR_ADVANCE * textSize;
+		}
+
+		@Implementation
+		public float measureText(String text){
+			return text.length() * advance();
+		}
+
+		@Implementation
+		public float measureText(String text, int start, int end){
+			return (end - start) * advance();
+		}
+
+		@Implementation
+		public float measureText(char[] text, int index, int count){
+			return count * advance();
+		}
+
+		@Implementation
+		public float measureText(CharSequence text, int start, int end){
+			return (end - start) * advance();
+		}
+
+		@Implementation
+		public int getTextWidths(char[] text, int index, int count, float[] widths){
+			return fillAdvances(count, widths, 0);
+		}
+
+		@Implementation
+		public int getTextWidths(CharSequence text, int start, int end, float[] widths){
+			return fillAdvances(end - start, widths, 0);
+		}
+
+		@Implementation
+		public int getTextWidths(String text, int start, int end, float[] widths){
+			return fillAdvances(end - start, widths, 0);
+		}
+
+		@Implementation
+		public int getTextWidths(String text, float[] widths){
+			return fillAdvances(text.length(), widths, 0);
+		}
+
+		@Implementation
+		public float getTextRunAdvances(char[] chars, int index, int count, int contextIndex, int contextCount,
+				boolean isRtl, float[] advances, int advancesIndex){
+			fillAdvances(count, advances, advancesIndex);
+			return count * advance();
+		}
+
+		@Implementation
+		public float getTextRunAdvances(CharSequence text, int start, int end, int contextStart, int contextEnd,
+				boolean isRtl, float[] advances, int advancesIndex){
+			fillAdvances(end - start, advances, advancesIndex);
+			return (end - start) * advance();
+		}
+
+		@Implementation
+		public float getTextRunAdvances(String text, int start, int end, int contextStart, int contextEnd,
+				boolean isRtl, float[] advances, int advancesIndex){
+			fillAdvances(end - start, advances, advancesIndex);
+			return (end - start) * advance();
+		}
+
+		private int fillAdvances(int count, float[] advances, int offset){
+			if(advances != null){
+				for(int i = 0; i < count; i++){
+					advances[offset + i] = advance();
+				}
+			}
+			return count;
+		}
+
+		@Implementation
+		public void getTextBounds(String text, int start, int end, Rect bounds){
+			bounds.set(0, (int)Math.floor(ascent()), (int)Math.ceil((end - start) * advance()), 0);
+		}
+
+		@Implementation
+		public void getTextBounds(char[] text, int index, int count, Rect bounds){
+			bounds.set(0, (int)Math.floor(ascent()), (int)Math.ceil(count * advance()), 0);
+		}
+	}
+
+	@Implements(TextPaint.class)
+	public static class GeometryTextPaint extends GeometryPaint {
+	}
+
+	/**
+	 * lets lines break after spaces, Robolectric's StaticLayout only breaks where a line is full
+	 */
+	@Implements(StaticLayout.class)
+	public static class GeometryStaticLayout {
+
+		@Implementation
+		public static int[] nLineBreakOpportunities(String locale, char[] text, int length, int[] recycle){
+			int[] breaks = new int[length + 2];
+			int count = 0;
+			for(int i = 0; i < length; i++){
+				if(text[i] == ' '){
+					breaks[count++] = i + 1;
+				}
+			}
+			breaks[count++] = length;
+			breaks[count] = -1;
+			return breaks;
+		}
+	}
+
+	/**
+	 * keeps the bounds of what is added, arcs count with their whole oval
+	 */
+	@Implements(Path.class)
+	public static class GeometryPath {
+
+		private final RectF bounds = new RectF();
+		private boolean empty = true;
+
+		@Implementation
+		public void __constructor__(Path src){
+			if(src != null){
+				GeometryPath shadow = (GeometryPath)ShadowExtractor.extract(src);
+				bounds.set(shadow.bounds);
+				empty = shadow.empty;
+			}
+		}
+
+		@Implementation
+		public void reset(){
+			bounds.setEmpty();
+			empty = true;
+		}
+
+		@Implementation
+		public void rewind(){
+			reset();
+		}
+
+		@Implementation
+		public boolean isEmpty(){
+			return empty;
+		}
+
+		@Implementation
+		public void computeBounds(RectF out, boolean exact){
+			out.set(bounds);
+		}
+
+		@Implementation
+		public void moveTo(float x, float y){
+			add(x, y, x, y);
+		}
+
+		@Implementation
+		public void lineTo(float x, float y){
+			add(x, y, x, y);
+		}
+
+		@Implementation
+		public void arcTo(RectF oval, float startAngle, float sweepAngle, boolean forceMoveTo){
+			add(oval.left, oval.top, oval.right, oval.bottom);
+		}
+
+		@Implementation
+		public void arcTo(RectF oval, float startAngle, float sweepAngle){
+			arcTo(oval, startAngle, sweepAngle, false);
+		}
+
+		@Implementation
+		public void addRect(RectF rect, Path.Direction dir){
+			add(rect.left, rect.top, rect.right, rect.bottom);
+		}
+
+		@Implementation
+		public void addRect(float left, float top, float right, float bottom, Path.Direction dir){
+			add(left, top, right, bottom);
+		}
+
+		@Implementation
+		public void addRoundRect(RectF rect, float rx, float ry, Path.Direction dir){
+			add(rect.left, rect.top, rect.right, rect.bottom);
+		}
+
+		@Implementation
+		public void close(){
+		}
+
+		private void add(float left, float top, float right, float bottom){
+			if(empty){
+				bounds.set(left, top, right, bottom);
+				empty = false;
+			}else{
+				//RectF.union() skips empty rects, a point is one
+				bounds.set(Math.min(bounds.left, left), Math.min(bounds.top, top),
+						Math.max(bounds.right, right), Math.max(bounds.bottom, bottom));
+			}
+		}
+	}
+}
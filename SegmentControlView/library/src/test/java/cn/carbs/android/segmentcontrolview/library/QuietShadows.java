@@ -0,0 +1,92 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.drawable.Drawable;
+import android.text.TextPaint;
+import android.view.View;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * shadows that take Robolectric's own shadows out of the way: the real framework code runs
+ * and its native calls do nothing. every call to a method a shadow implements allocates
+ * its arguments and its result, these implement none, so that allocation tests only see
+ * what the view and the framework allocate.
+ * nothing is drawn and texts measure 0 wide, use GeometryShadows to give them a size
+ */
+public class QuietShadows {
+
+	@Implements(View.class)
+	public static class QuietView {
+	}
+
+	@Implements(Paint.class)
+	public static class QuietPaint {
+	}
+
+	@Implements(TextPaint.class)
+	public static class QuietTextPaint extends QuietPaint {
+	}
+
+	@Implements(Path.class)
+	public static class QuietPath {
+	}
+
+	@Implements(Canvas.class)
+	public static class QuietCanvas {
+	}
+
+	@Implements(Matrix.class)
+	public static class QuietMatrix {
+	}
+
+	@Implements(Drawable.class)
+	public static class QuietDrawable {
+	}
+
+	/**
+	 * only creates bitmaps, which without a native side need a native pointer to exist
+	 */
+	@Implements(Bitmap.class)
+	public static class QuietBitmap {
+
+		@Implementation
+		public static Bitmap createBitmap(int width, int height, Bitmap.Config config){
+			return newBitmap(width, height);
+		}
+	}
+
+	/**
+	 * a real, mutable Bitmap object of the given size, nothing backs its pixels
+	 */
+	static Bitmap newBitmap(int width, int height){
+		try{
+			for(Constructor<?> constructor : Bitmap.class.getDeclaredConstructors()){
+				Class<?>[] types = constructor.getParameterTypes();
+				//Bitmap(long nativeBitmap, byte[] buffer, int width, int height, int density,
+				//		boolean isMutable, boolean requestPremultiplied, byte[] ninePatchChunk, ...)
+				if(types.length >= 8 && types[0] == long.class && types[2] == int.class){
+					Object[] args = new Object[types.length];
+					args[0] = 1L;
+					args[2] = width;
+					args[3] = height;
+					args[4] = -1;
+					args[5] = true;
+					args[6] = true;
+					constructor.setAccessible(true);
+					return (Bitmap)constructor.newInstance(args);
+				}
+			}
+		}catch(Exception e){
+			throw new IllegalStateException(e);
+		}
+		throw new IllegalStateException("no Bitmap constructor to create a bitmap with");
+	}
+}
@@ -0,0 +1,241 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.graphics.Bitmap;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import java.util.ArrayList;
+
+/**
+ * a ViewCanvas which records what is drawn on it, where, in which color and through which clip,
+ * in the coordinates of the view. text sizes are those of GeometryShadows' stand-in font
+ */
+class RecordingCanvas extends ViewCanvas {
+
+	static final int PATH = 0;
+	static final int RECT = 1;
+	static final int LINES = 2;
+	static final int BITMAP = 3;
+	static final int TEXT = 4;
+
+	static class Call {
+		int type;
+		final RectF bounds = new RectF();	//of the path, rect or text, the lines of LINES
+		RectF clip;	//null if not clipped
+		int color;	//of the paint, 0xFFFFFFFF for bitmaps drawn without one
+		Paint.Style style;
+		int count;	//lines of LINES
+		Bitmap bitmap;
+		String text;
+
+		@Override
+		public String toString() {
+			String[] types = {"path", "rect", "lines", "bitmap", "text"};
+			return types[type] + (text != null ? " \"" + text + "\"" : "") + " " + bounds.toShortString()
+					+ " #" + Integer.toHexString(color) + (style != null ? " " + style : "");
+		}
+	}
+
+	private final ArrayList<Call> calls = new ArrayList<Call>();
+	//translation and clip of the current save level and of those below it
+	private final ArrayList<float[]> saved = new ArrayList<float[]>();
+	private float dx;
+	private float dy;
+	private RectF clip;
+
+	ArrayList<Call> getCalls(){
+		return calls;
+	}
+
+	/**
+	 * @return the calls of the given type, in the order they were made
+	 */
+	ArrayList<Call> getCalls(int type){
+		ArrayList<Call> result = new ArrayList<Call>();
+		for(Call call : calls){
+			if(call.type == type){
+				result.add(call);
+			}
+		}
+		return result;
+	}
+
+	void clear(){
+		calls.clear();
+	}
+
+	@Override
+	public int save() {
+		saved.add(new float[]{dx, dy, clip == null ? Float.NaN : clip.left,
+				clip == null ? 0 : clip.top, clip == null ? 0 : clip.right, clip == null ? 0 : clip.bottom});
+		return saved.size();
+	}
+
+	@Override
+	public int save(int saveFlags) {
+		return save();
+	}
+
+	@Override
+	public int getSaveCount() {
+		return saved.size() + 1;
+	}
+
+	@Override
+	public void restore() {
+		float[] state = saved.remove(saved.size() - 1);
+		dx = state[0];
+		dy = state[1];
+		clip = Float.isNaN(state[2]) ? null : new RectF(state[2], state[3], state[4], state[5]);
+	}
+
+	@Override
+	public void restoreToCount(int saveCount) {
+		while(getSaveCount() > saveCount){
+			restore();
+		}
+	}
+
+	@Override
+	public void translate(float dx, float dy) {
+		this.dx += dx;
+		this.dy += dy;
+	}
+
+	@Override
+	public boolean clipRect(float left, float top, float right, float bottom) {
+		RectF rect = new RectF(left + dx, top + dy, right + dx, bottom + dy);
+		if(clip == null){
+			clip = rect;
+		}else if(!clip.intersect(rect)){
+			clip.setEmpty();
+		}
+		return !clip.isEmpty();
+	}
+
+	@Override
+	public boolean clipRect(int left, int top, int right, int bottom) {
+		return clipRect((float)left, top, right, bottom);
+	}
+
+	@Override
+	public boolean clipRect(Rect rect) {
+		return clipRect((float)rect.left, rect.top, rect.right, rect.bottom);
+	}
+
+	@Override
+	public boolean clipRect(RectF rect) {
+		return clipRect(rect.left, rect.top, rect.right, rect.bottom);
+	}
+
+	@Override
+	public boolean getClipBounds(Rect bounds) {
+		boolean notEmpty = super.getClipBounds(bounds);
+		bounds.offset(-Math.round(dx), -Math.round(dy));
+		return notEmpty;
+	}
+
+	@Override
+	public void drawPath(Path path, Paint paint) {
+		Call call = record(PATH, paint);
+		path.computeBounds(call.bounds, true);
+		call.bounds.offset(dx, dy);
+	}
+
+	@Override
+	public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+		record(RECT, paint).bounds.set(left + dx, top + dy, right + dx, bottom + dy);
+	}
+
+	@Override
+	public void drawRect(RectF rect, Paint paint) {
+		drawRect(rect.left, rect.top, rect.right, rect.bottom, paint);
+	}
+
+	@Override
+	public void drawRect(Rect rect, Paint paint) {
+		drawRect(rect.left, rect.top, rect.right, rect.bottom, paint);
+	}
+
+	@Override
+	public void drawLines(float[] pts, int offset, int count, Paint paint) {
+		Call call = record(LINES, paint);
+		call.count = count / 4;
+		for(int i = offset; i + 3 < offset + count; i += 4){
+			RectF line = new RectF(Math.min(pts[i], pts[i + 2]) + dx, Math.min(pts[i + 1], pts[i + 3]) + dy,
+					Math.max(pts[i], pts[i + 2]) + dx, Math.max(pts[i + 1], pts[i + 3]) + dy);
+			if(i == offset){
+				call.bounds.set(line);
+			}else{
+				call.bounds.union(line.left, line.top);
+				call.bounds.union(line.right, line.bottom);
+			}
+		}
+	}
+
+	@Override
+	public void drawLines(float[] pts, Paint paint) {
+		drawLines(pts, 0, pts.length, paint);
+	}
+
+	@Override
+	public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+		Call call = record(BITMAP, paint);
+		if(paint == null){
+			call.color = 0xFFFFFFFF;
+		}
+		call.bitmap = bitmap;
+		call.bounds.set(left + dx, top + dy, left + dx + bitmap.getWidth(), top + dy + bitmap.getHeight());
+	}
+
+	@Override
+	public void drawText(String text, float x, float y, Paint paint) {
+		drawText(text, 0, text.length(), x, y, paint);
+	}
+
+	@Override
+	public void drawText(String text, int start, int end, float x, float y, Paint paint) {
+		drawText((CharSequence)text, start, end, x, y, paint);
+	}
+
+	@Override
+	public void drawText(char[] text, int index, int count, float x, float y, Paint paint) {
+		drawText(new String(text, index, count), x, y, paint);
+	}
+
+	@Override
+	public void drawText(CharSequence text, int start, int end, float x, float y, Paint paint) {
+		Call call = record(TEXT, paint);
+		call.text = text.subSequence(start, end).toString();
+		float size = paint.getTextSize();
+		call.bounds.set(x + dx, y + dy + GeometryShadows.ASCENT * size,
+				x + dx + call.text.length() * GeometryShadows.CHAR_ADVANCE * size,
+				y + dy + GeometryShadows.DESCENT * size);
+	}
+
+	@Override
+	public void drawTextRun(char[] text, int index, int count, int contextIndex, int contextCount,
+			float x, float y, boolean isRtl, Paint paint) {
+		drawText(text, index, count, x, y, paint);
+	}
+
+	@Override
+	public void drawTextRun(CharSequence text, int start, int end, int contextStart, int contextEnd,
+			float x, float y, boolean isRtl, Paint paint) {
+		drawText(text, start, end, x, y, paint);
+	}
+
+	private Call record(int type, Paint paint){
+		Call call = new Call();
+		call.type = type;
+		call.clip = clip == null ? null : new RectF(clip);
+		if(paint != null){
+			call.color = paint.getColor();
+			call.style = paint.getStyle();
+		}
+		calls.add(call);
+		return call;
+	}
+}
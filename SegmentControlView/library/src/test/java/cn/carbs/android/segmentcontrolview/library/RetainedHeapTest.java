@@ -0,0 +1,141 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * the heap retained by many views styled alike, e.g. the rows of a list, with a shared
+ * SegmentStyle and with every view styled by its own setters. the views are measured and drawn
+ * once, so that every view has built what it draws with
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21, shadows = {
+		QuietShadows.QuietView.class,
+		QuietShadows.QuietPaint.class,
+		QuietShadows.QuietTextPaint.class,
+		QuietShadows.QuietPath.class,
+		QuietShadows.QuietCanvas.class,
+		QuietShadows.QuietMatrix.class,
+		QuietShadows.QuietDrawable.class,
+		QuietShadows.QuietBitmap.class})
+public class RetainedHeapTest {
+
+	private static final int VIEWS = 500;
+	private static final String[] TEXTS = {"one", "two", "three", "four"};
+	private static final int WIDTH = 300;
+	private static final int ROUNDS = 5;
+
+	private static final int TEXT_COLOR_NORMAL = 0xFF333333;
+	private static final int TEXT_COLOR_SELECTED = 0xFFFFFFFF;
+	private static final int BACKGROUND_COLOR_NORMAL = 0xFFFFFFFF;
+	private static final int BACKGROUND_COLOR_SELECTED = 0xFF0099CC;
+	private static final int FRAME_COLOR = 0xFF0099CC;
+
+	//the three color tables every view without a shared style builds for itself
+	private static final long COLOR_TABLE_BYTES = 3L * 4 * (SegmentColors.COLOR_RAMP_STEPS + 1);
+
+	private final ViewCanvas canvas = new ViewCanvas();
+
+	@Test
+	public void sharedStyleRetainsLess(){
+		//the first views load classes and fill caches, which neither kind should be charged for
+		create(VIEWS, false);
+		create(VIEWS, true);
+
+		//the median of a few alternating rounds, a round may be charged for garbage of the test runner
+		//or credited with garbage it collected
+		long[] ownBytes = new long[ROUNDS];
+		long[] sharedBytes = new long[ROUNDS];
+		long[] savedBytes = new long[ROUNDS];
+		for(int round = 0; round < ROUNDS; round++){
+			ownBytes[round] = retained(false);
+			sharedBytes[round] = retained(true);
+			savedBytes[round] = ownBytes[round] - sharedBytes[round];
+		}
+		Arrays.sort(savedBytes);
+
+		String message = VIEWS + " views retain " + Arrays.toString(ownBytes) + " bytes with their own styles and "
+				+ Arrays.toString(sharedBytes) + " bytes with a shared one";
+		//each shared view saves at least its color tables, half of them leaves room for the heap's noise
+		assertTrue(message, savedBytes[ROUNDS / 2] >= VIEWS * COLOR_TABLE_BYTES / 2);
+	}
+
+	/**
+	 * @return the bytes retained by VIEWS views
+	 */
+	private long retained(boolean shared){
+		long before = usedHeap();
+		ArrayList<SegmentControlView> views = create(VIEWS, shared);
+		long bytes = usedHeap() - before;
+		assertEquals(VIEWS, views.size());
+		if(shared){
+			SegmentStyle style = views.get(0).getSegmentStyle();
+			for(SegmentControlView view : views){
+				assertSame("styles built alike are pooled", style, view.getSegmentStyle());
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * @param shared true to style the views with one SegmentStyle, false to use the setters of each view
+	 */
+	private ArrayList<SegmentControlView> create(int count, boolean shared){
+		ArrayList<SegmentControlView> views = new ArrayList<SegmentControlView>(count);
+		for(int i = 0; i < count; i++){
+			SegmentControlView view = new SegmentControlView(RuntimeEnvironment.application);
+			view.setTexts(TEXTS);
+			if(shared){
+				//a style built for every view, as a list adapter would, the pool hands out one
+				view.setSegmentStyle(new SegmentStyle.Builder(RuntimeEnvironment.application)
+						.setTextColor(TEXT_COLOR_NORMAL, TEXT_COLOR_SELECTED)
+						.setBackgroundColor(BACKGROUND_COLOR_NORMAL, BACKGROUND_COLOR_SELECTED)
+						.setFrameColor(FRAME_COLOR)
+						.build());
+			}else{
+				view.setTextColor(TEXT_COLOR_NORMAL, TEXT_COLOR_SELECTED);
+				view.setBackgroundColor(BACKGROUND_COLOR_NORMAL, BACKGROUND_COLOR_SELECTED);
+				view.setFrameColor(FRAME_COLOR);
+			}
+			view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+					View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+			view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+			canvas.setSize(view);
+			view.draw(canvas);
+			views.add(view);
+		}
+		return views;
+	}
+
+	/**
+	 * the bytes in use after collecting until the heap stops shrinking
+	 */
+	private static long usedHeap(){
+		MemoryMXBean bean = ManagementFactory.getMemoryMXBean();
+		long used = Long.MAX_VALUE;
+		for(int i = 0; i < 10; i++){
+			System.gc();
+			System.runFinalization();
+			long now = bean.getHeapMemoryUsage().getUsed();
+			if(now >= used){
+				return now;
+			}
+			used = now;
+		}
+		return used;
+	}
+}
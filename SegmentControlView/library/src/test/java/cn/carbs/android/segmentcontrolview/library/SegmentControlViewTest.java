@@ -0,0 +1,297 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.support.v4.view.ViewPager;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.RelativeSizeSpan;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * measures, taps and ViewPager scrolls of SegmentControlView, with texts measured by GeometryShadows
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21, shadows = {
+		QuietShadows.QuietView.class,
+		GeometryShadows.GeometryPaint.class,
+		GeometryShadows.GeometryTextPaint.class,
+		GeometryShadows.GeometryStaticLayout.class,
+		GeometryShadows.GeometryPath.class,
+		QuietShadows.QuietCanvas.class,
+		QuietShadows.QuietBitmap.class})
+public class SegmentControlViewTest {
+
+	private static final String[] TEXTS = {"one", "two", "three", "four"};
+	private static final int WIDTH = 300;
+	private static final int FRAME_MILLIS = 16;
+
+	private Activity activity;
+	private TestSegmentControlView view;
+	private final ArrayList<String> events = new ArrayList<String>();
+
+	@Before
+	public void setUp(){
+		activity = TestWindow.open();
+		view = new TestSegmentControlView(activity);
+		view.setTexts(TEXTS);
+		view.setOnSegmentChangedListener(new SegmentControlView.OnSegmentChangedListener() {
+			@Override
+			public void onSegmentChanged(int newSelectedIndex) {
+				events.add("segment " + newSelectedIndex);
+			}
+		});
+		view.setOnSelectionChangeListener(new SegmentControlView.OnSelectionChangeListener() {
+			@Override
+			public void onSelectionChanged(int selectedIndex, boolean fromUser) {
+				events.add("changed " + selectedIndex + (fromUser ? " by user" : ""));
+			}
+
+			@Override
+			public void onSelectionSettled(int selectedIndex, boolean fromUser) {
+				events.add("settled " + selectedIndex + (fromUser ? " by user" : ""));
+			}
+		});
+	}
+
+	@Test
+	public void exactWidthAndWrappedHeight(){
+		measure(exactly(WIDTH), unspecified());
+		assertEquals(WIDTH, view.getMeasuredWidth());
+		assertTrue(view.getMeasuredHeight() > 0);
+	}
+
+	@Test
+	public void wrappedWidthFitsTheTexts(){
+		measure(atMost(1000), unspecified());
+		int wrapped = view.getMeasuredWidth();
+		assertTrue(wrapped > 0 && wrapped < 1000);
+		measure(unspecified(), unspecified());
+		assertEquals(wrapped, view.getMeasuredWidth());
+	}
+
+	@Test
+	public void atMostLimitsTheSize(){
+		measure(atMost(50), atMost(5));
+		assertTrue(view.getMeasuredWidth() <= 50);
+		assertTrue(view.getMeasuredHeight() <= 5);
+	}
+
+	@Test
+	public void moreLinesMakeItTaller(){
+		view.setTexts(new String[]{"one", "two words here", "three"});
+		measure(exactly(WIDTH), unspecified());
+		int oneLine = view.getMeasuredHeight();
+		view.setTextMaxLines(2);
+		measure(exactly(WIDTH), unspecified());
+		assertTrue(view.getMeasuredHeight() > oneLine);
+	}
+
+	@Test
+	public void sizeSpanMakesItTaller(){
+		measure(exactly(WIDTH), unspecified());
+		int plain = view.getMeasuredHeight();
+		SpannableString large = new SpannableString("two");
+		large.setSpan(new RelativeSizeSpan(2f), 0, large.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+		view.setTexts(new CharSequence[]{"one", large, "three", "four"});
+		measure(exactly(WIDTH), unspecified());
+		assertTrue(view.getMeasuredHeight() > plain);
+	}
+
+	@Test
+	public void tapSelectsTheSegment(){
+		layout();
+		tap(2);
+		assertEquals(2, view.getSelectedIndex());
+		view.runFrames();
+		assertEvents("segment 2", "changed 2 by user", "settled 2 by user");
+	}
+
+	@Test
+	public void tapOnTheSelectedSegmentReportsNothing(){
+		layout();
+		tap(0);
+		view.runFrames();
+		assertEquals(0, view.getSelectedIndex());
+		assertEvents();
+	}
+
+	@Test
+	public void cancelledTapSelectsNothing(){
+		layout();
+		touch(MotionEvent.ACTION_DOWN, 3);
+		touch(MotionEvent.ACTION_CANCEL, 3);
+		view.runFrames();
+		assertEquals(0, view.getSelectedIndex());
+		assertEvents();
+	}
+
+	@Test
+	public void tapsWithinAFrameAreReportedOnce(){
+		layout();
+		tap(1);
+		tap(3);
+		view.runFrames();
+		assertEvents("segment 1", "segment 3", "changed 3 by user", "settled 3 by user");
+	}
+
+	@Test
+	public void animatedSelectionSettlesAtItsEnd(){
+		view.setSelectionAnimationDuration(10 * FRAME_MILLIS);
+		layout();
+		tap(2);
+		view.runFrame();
+		assertEvents("segment 2", "changed 2 by user");
+		int frames = 0;
+		while(view.hasPostedFrame()){
+			assertEquals(2, events.size());
+			SystemClock.sleep(FRAME_MILLIS);
+			view.runFrame();
+			frames++;
+		}
+		assertTrue("frames of the animation: " + frames, frames >= 10);
+		assertEvents("segment 2", "changed 2 by user", "settled 2 by user");
+	}
+
+	@Test
+	public void viewPagerSweepMovesTheGradient(){
+		TestViewPager viewPager = new TestViewPager(activity);
+		view.setGradient(true);
+		view.setViewPager(viewPager);
+		layout();
+		viewPager.setScrollState(ViewPager.SCROLL_STATE_DRAGGING);
+		for(int page = 0; page < TEXTS.length - 1; page++){
+			for(int step = 1; step < 10; step++){
+				viewPager.scroll(page, step / 10f);
+				view.runFrame();
+			}
+			viewPager.select(page + 1);
+			viewPager.scroll(page + 1, 0f);
+			view.runFrame();
+			assertEquals(page + 1, view.getSelectedIndex());
+		}
+		assertEvents("changed 1 by user", "changed 2 by user", "changed 3 by user");
+		viewPager.setScrollState(ViewPager.SCROLL_STATE_IDLE);
+		view.runFrames();
+		assertEquals("settled 3 by user", events.get(events.size() - 1));
+	}
+
+	@Test
+	public void viewPagerSelectsWithoutGradient(){
+		TestViewPager viewPager = new TestViewPager(activity);
+		view.setViewPager(viewPager);
+		layout();
+		viewPager.select(3);
+		assertEquals(3, view.getSelectedIndex());
+		view.runFrames();
+		assertEvents("segment 3", "changed 3", "settled 3");
+		view.setViewPager(null);
+		assertEquals(0, viewPager.getListenerCount());
+	}
+
+	@Test
+	public void viewPagerIsListenedToWhileAttached(){
+		TestViewPager viewPager = new TestViewPager(activity);
+		view.setViewPager(viewPager);
+		assertEquals(0, viewPager.getListenerCount());
+		layout();
+		assertEquals(1, viewPager.getListenerCount());
+		detach();
+		assertEquals(0, viewPager.getListenerCount());
+	}
+
+	@Test
+	public void reattachFollowsTheViewPagerQuietly(){
+		TestViewPager viewPager = new TestViewPager(activity);
+		view.setViewPager(viewPager);
+		layout();
+		detach();
+		viewPager.select(2);
+		layout();
+		assertEquals(2, view.getSelectedIndex());
+		detach();
+		layout();
+		assertEquals(2, view.getSelectedIndex());
+		assertEvents();
+	}
+
+	@Test
+	public void detachLeavesTheLayersToTheGarbageCollector(){
+		view.setRenderMode(SegmentControlView.RENDER_MODE_LAYERS);
+		layout();
+		ViewCanvas canvas = new ViewCanvas();
+		canvas.setSize(view);
+		view.draw(canvas);
+		Bitmap layer = ReflectionHelpers.getField(view, "layerNormal");
+		assertNotNull(layer);
+		activity.setContentView(new FrameLayout(activity));
+		assertNull(ReflectionHelpers.getField(view, "layerNormal"));
+		//a display list recorded from the layer may still be drawn after the detach
+		assertFalse(layer.isRecycled());
+	}
+
+	private void measure(int widthMeasureSpec, int heightMeasureSpec){
+		view.measure(widthMeasureSpec, heightMeasureSpec);
+	}
+
+	private void layout(){
+		FrameLayout parent = new FrameLayout(activity);
+		parent.addView(view, new FrameLayout.LayoutParams(WIDTH, ViewGroup.LayoutParams.WRAP_CONTENT));
+		activity.setContentView(parent);
+		measure(exactly(WIDTH), unspecified());
+		view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+		view.runFrames();
+	}
+
+	private void detach(){
+		((ViewGroup)view.getParent()).removeView(view);
+	}
+
+	private void tap(int segment){
+		touch(MotionEvent.ACTION_DOWN, segment);
+		touch(MotionEvent.ACTION_UP, segment);
+	}
+
+	private void touch(int action, int segment){
+		float x = WIDTH * (segment + 0.5f) / view.getCount();
+		MotionEvent event = MotionEvent.obtain(0, 0, action, x, view.getHeight() / 2f, 0);
+		view.onTouchEvent(event);
+		event.recycle();
+	}
+
+	private void assertEvents(String... expected){
+		assertEquals(Arrays.asList(expected), events);
+	}
+
+	private static int exactly(int size){
+		return View.MeasureSpec.makeMeasureSpec(size, View.MeasureSpec.EXACTLY);
+	}
+
+	private static int atMost(int size){
+		return View.MeasureSpec.makeMeasureSpec(size, View.MeasureSpec.AT_MOST);
+	}
+
+	private static int unspecified(){
+		return View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+	}
+}
@@ -0,0 +1,69 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * the pool of SegmentStyle, which list adapters may fill from several threads at once
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21, shadows = {
+		QuietShadows.QuietPaint.class,
+		QuietShadows.QuietTextPaint.class})
+public class SegmentStyleTest {
+
+	private static final int THREADS = 8;
+	private static final int BUILDS = 1000;
+
+	@Test
+	public void stylesBuiltOnManyThreadsArePooledToOne() throws InterruptedException {
+		final SegmentStyle.Builder[] builders = new SegmentStyle.Builder[THREADS];
+		for(int i = 0; i < THREADS; i++){
+			builders[i] = new SegmentStyle.Builder(RuntimeEnvironment.application)
+					.setTextColor(0xFF333333, 0xFFFFFFFF)
+					.setFrameColor(0xFF0099CC);
+		}
+		final SegmentStyle[][] built = new SegmentStyle[THREADS][BUILDS];
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[THREADS];
+		for(int i = 0; i < THREADS; i++){
+			final int thread = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try{
+						start.await();
+					}catch(InterruptedException e){
+						return;
+					}
+					for(int j = 0; j < BUILDS; j++){
+						built[thread][j] = builders[thread].build();
+					}
+				}
+			});
+			threads[i].start();
+		}
+		start.countDown();
+		for(Thread thread : threads){
+			thread.join();
+		}
+
+		SegmentStyle style = built[0][0];
+		assertNotNull(style.getTextPaint());
+		assertEquals(SegmentColors.COLOR_RAMP_STEPS + 1, style.getTextRamp().length);
+		for(SegmentStyle[] styles : built){
+			for(SegmentStyle other : styles){
+				assertSame(style, other);
+			}
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.content.Context;
+import android.graphics.Point;
+import android.graphics.Rect;
+
+/**
+ * a SegmentControlView whose animation frames are run by the test: what the view posts with
+ * ViewCompat.postOnAnimation() waits until runFrame(), instead of going through
+ * Robolectric's scheduler, which allocates for every post and runs frames whenever it likes.
+ * the view also counts as on screen as soon as it has a size, as not every test attaches it
+ * to a TestWindow, and a view without a window is never shown
+ */
+class TestSegmentControlView extends SegmentControlView {
+
+	private static final int MAX_POSTED = 8;
+
+	//every runnable ever posted for a frame, only those are removed from the frame queue
+	private final Runnable[] frameRunnables = new Runnable[MAX_POSTED];
+	private final Runnable[] posted = new Runnable[MAX_POSTED];
+	private final Runnable[] running = new Runnable[MAX_POSTED];
+	private int postedCount = 0;
+	private boolean invalidateOnFrame = false;
+
+	TestSegmentControlView(Context context) {
+		super(context);
+	}
+
+	@Override
+	public void postOnAnimation(Runnable action) {
+		remember(action);
+		if(postedCount == MAX_POSTED){
+			throw new IllegalStateException("too many runnables posted for the next frame");
+		}
+		posted[postedCount++] = action;
+	}
+
+	@Override
+	public void postInvalidateOnAnimation() {
+		invalidateOnFrame = true;
+	}
+
+	@Override
+	public boolean removeCallbacks(Runnable action) {
+		if(!isFrameRunnable(action)){
+			return super.removeCallbacks(action);
+		}
+		boolean removed = false;
+		for(int i = postedCount - 1; i >= 0; i--){
+			if(posted[i] == action){
+				System.arraycopy(posted, i + 1, posted, i, postedCount - i - 1);
+				posted[--postedCount] = null;
+				removed = true;
+			}
+		}
+		return removed;
+	}
+
+	@Override
+	public boolean isShown() {
+		return getVisibility() == VISIBLE && getWidth() > 0 && getHeight() > 0;
+	}
+
+	@Override
+	public boolean getGlobalVisibleRect(Rect r, Point globalOffset) {
+		r.set(0, 0, getWidth(), getHeight());
+		if(globalOffset != null){
+			globalOffset.set(0, 0);
+		}
+		return !r.isEmpty();
+	}
+
+	/**
+	 * runs what was posted for the next frame, runnables posted meanwhile wait for the one after
+	 * @return true if anything ran
+	 */
+	boolean runFrame(){
+		int count = postedCount;
+		System.arraycopy(posted, 0, running, 0, count);
+		for(int i = 0; i < count; i++){
+			posted[i] = null;
+		}
+		postedCount = 0;
+		boolean invalidate = invalidateOnFrame;
+		invalidateOnFrame = false;
+		for(int i = 0; i < count; i++){
+			running[i].run();
+			running[i] = null;
+		}
+		if(invalidate){
+			invalidate();
+		}
+		return count > 0 || invalidate;
+	}
+
+	/**
+	 * runs frames until nothing is posted any more
+	 * @return how many frames ran
+	 */
+	int runFrames(){
+		int frames = 0;
+		while(runFrame()){
+			if(++frames > 1000){
+				throw new IllegalStateException("the view keeps posting frames");
+			}
+		}
+		return frames;
+	}
+
+	boolean hasPostedFrame(){
+		return postedCount > 0 || invalidateOnFrame;
+	}
+
+	private void remember(Runnable action){
+		for(int i = 0; i < MAX_POSTED; i++){
+			if(frameRunnables[i] == action){
+				return;
+			}
+			if(frameRunnables[i] == null){
+				frameRunnables[i] = action;
+				return;
+			}
+		}
+	}
+
+	private boolean isFrameRunnable(Runnable action){
+		for(int i = 0; i < MAX_POSTED && frameRunnables[i] != null; i++){
+			if(frameRunnables[i] == action){
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,61 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.content.Context;
+import android.support.v4.view.ViewPager;
+
+import java.util.ArrayList;
+
+/**
+ * a ViewPager without pages, the test plays its scroll callbacks to the listeners added to it
+ * and moves its current item with them
+ */
+class TestViewPager extends ViewPager {
+
+	private final ArrayList<OnPageChangeListener> listeners = new ArrayList<OnPageChangeListener>();
+	private int currentItem = 0;
+
+	TestViewPager(Context context) {
+		super(context);
+	}
+
+	@Override
+	public void addOnPageChangeListener(OnPageChangeListener listener) {
+		super.addOnPageChangeListener(listener);
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeOnPageChangeListener(OnPageChangeListener listener) {
+		super.removeOnPageChangeListener(listener);
+		listeners.remove(listener);
+	}
+
+	@Override
+	public int getCurrentItem() {
+		return currentItem;
+	}
+
+	int getListenerCount(){
+		return listeners.size();
+	}
+
+	void scroll(int position, float positionOffset){
+		int pixels = (int)(positionOffset * getWidth());
+		for(int i = 0; i < listeners.size(); i++){
+			listeners.get(i).onPageScrolled(position, positionOffset, pixels);
+		}
+	}
+
+	void select(int position){
+		currentItem = position;
+		for(int i = 0; i < listeners.size(); i++){
+			listeners.get(i).onPageSelected(position);
+		}
+	}
+
+	void setScrollState(int state){
+		for(int i = 0; i < listeners.size(); i++){
+			listeners.get(i).onPageScrollStateChanged(state);
+		}
+	}
+}
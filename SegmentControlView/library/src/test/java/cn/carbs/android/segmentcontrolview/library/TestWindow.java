@@ -0,0 +1,29 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.app.Activity;
+import android.graphics.drawable.ColorDrawable;
+import android.view.Window;
+
+import org.robolectric.Robolectric;
+import org.robolectric.util.ActivityController;
+
+/**
+ * a resumed activity whose window views are attached to. the window has no title bar and a
+ * background that needs no resources, so that it can be created with QuietShadows or
+ * GeometryShadows in place of Robolectric's Bitmap and Drawable shadows
+ */
+final class TestWindow {
+
+	private TestWindow(){
+	}
+
+	static Activity open(){
+		ActivityController<Activity> controller = Robolectric.buildActivity(Activity.class).create();
+		Activity activity = controller.get();
+		activity.setTheme(android.R.style.Theme_Material_NoActionBar);
+		activity.requestWindowFeature(Window.FEATURE_NO_TITLE);
+		activity.getWindow().setBackgroundDrawable(new ColorDrawable(0xFFFFFFFF));
+		controller.start().resume().visible();
+		return activity;
+	}
+}
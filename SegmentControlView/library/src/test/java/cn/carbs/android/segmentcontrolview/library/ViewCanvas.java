@@ -0,0 +1,36 @@
+package cn.carbs.android.segmentcontrolview.library;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.View;
+
+/**
+ * a canvas that draws nothing but clips to the view, text layouts skip drawing if
+ * the clip is empty, as it is on a quiet canvas
+ */
+class ViewCanvas extends Canvas {
+
+	private int width;
+	private int height;
+
+	void setSize(View view){
+		width = view.getWidth();
+		height = view.getHeight();
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public boolean getClipBounds(Rect bounds) {
+		bounds.set(0, 0, width, height);
+		return width > 0 && height > 0;
+	}
+}